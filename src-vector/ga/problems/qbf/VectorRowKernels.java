@@ -0,0 +1,48 @@
+package ga.problems.qbf;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowKernels} implemented with the Vector API, processing as many
+ * coefficients per instruction as the preferred vector size of the machine
+ * holds. Loaded by {@link RowKernels#INSTANCE} when the jdk.incubator.vector
+ * module is present.
+ */
+public class VectorRowKernels extends RowKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public double dot(double[] row, int offset, double[] x, int from, int to) {
+
+		DoubleVector sum = DoubleVector.zero(SPECIES);
+		int j = from;
+
+		for (int bound = from + SPECIES.loopBound(to - from); j < bound; j += SPECIES.length()) {
+			DoubleVector xj = DoubleVector.fromArray(SPECIES, x, j);
+			sum = DoubleVector.fromArray(SPECIES, row, offset + j).fma(xj, sum);
+		}
+
+		return sum.reduceLanes(VectorOperators.ADD) + super.dot(row, offset, x, j, to);
+
+	}
+
+	@Override
+	public void axpy(double factor, double[] row, int offset, double[] target, int length) {
+
+		DoubleVector f = DoubleVector.broadcast(SPECIES, factor);
+		int j = 0;
+
+		for (int bound = SPECIES.loopBound(length); j < bound; j += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, row, offset + j).fma(f, DoubleVector.fromArray(SPECIES, target, j))
+					.intoArray(target, j);
+		}
+		for (; j < length; j++) {
+			target[j] += factor * row[offset + j];
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package ga.ga;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import ga.metaheuristics.ga.AbstractGA;
+import ga.metaheuristics.ga.IslandModel;
+import ga.problems.qbf.QBF;
+import ga.problems.qbf.solvers.GA_QBF;
+import ga.solutions.Solution;
+
+/**
+ * Compares the time to target of the island model of the GA with the one of
+ * a single population of the same total size, each population having the
+ * default size of {@link GA_QBF} for the instance.
+ */
+public class GA_Islands {
+
+    /**
+     * @param args the instance, the number of islands, the target value and,
+     * optionally, the number of runs, the migration interval, the number of
+     * migrants and the topology (ring or random)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: GA_Islands <instance> <islands> <target> [runs=10] [interval=10]"
+                    + " [migrants=2] [ring|random]");
+            System.exit(1);
+        }
+
+        String instance = args[0];
+        int islandCount = Integer.parseInt(args[1]);
+        AbstractGA.targetCost = Double.parseDouble(args[2]);
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int interval = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int migrants = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+        IslandModel.Topology topology = args.length > 6 ? IslandModel.Topology.valueOf(args[6].toUpperCase())
+                : IslandModel.Topology.RING;
+
+        AbstractGA.isTTTPlotExecution = true;
+        AbstractGA.verbose = false;
+        QBF qbf = new QBF(instance);
+        double mutationRate = 1.0 / qbf.getDomainSize();
+        int islandSize = new GA_QBF(3000, 0, mutationRate, qbf).getPopulationSize();
+
+        double[] single = new double[runs], islands = new double[runs];
+        for (int run = 0; run < runs; run++) {
+            long seed = (long) run * islandCount;
+            single[run] = timeToTarget(new IslandModel<Integer>((size, s) -> new GA_QBF(3000, size, mutationRate, qbf, s),
+                    1, islandCount * islandSize, interval, migrants, topology, seed));
+            islands[run] = timeToTarget(new IslandModel<Integer>((size, s) -> new GA_QBF(3000, size, mutationRate, qbf, s),
+                    islandCount, islandSize, interval, migrants, topology, seed));
+            System.out.printf("run %d: single population %.3f s, %d islands %.3f s%n", run, single[run],
+                    islandCount, islands[run]);
+        }
+
+        System.out.printf("%s, target %.0f, %d x %d chromosomes: median time to target %.3f s single, %.3f s islands%n",
+                instance, AbstractGA.targetCost, islandCount, islandSize, median(single), median(islands));
+    }
+
+    /**
+     * @return the time the islands take to reach the target, in seconds, or
+     * infinity if they do not reach it
+     */
+    private static double timeToTarget(IslandModel<Integer> model) {
+        long startTime = System.currentTimeMillis();
+        Solution<Integer> bestSol = model.solve();
+        double totalTime = (System.currentTimeMillis() - startTime) / 1000.0;
+        return bestSol.cost >= AbstractGA.targetCost ? totalTime : Double.POSITIVE_INFINITY;
+    }
+
+    private static double median(double[] times) {
+        double[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
@@ -1,29 +1,671 @@
 package ga.metaheuristics.ga;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
+import ga.problems.EvaluationCache;
 import ga.problems.Evaluator;
+import ga.problems.InstrumentedEvaluator;
 import ga.solutions.Solution;
+import ga.solutions.Zobrist;
 
 /**
  * Abstract class for metaheuristic GA (Genetic Algorithms). It consider the
  * maximization of the chromosome fitness.
  * 
  * @author ccavellucci, fusberti
- * @param <G>
- *            Generic type of the chromosome element (genotype).
  * @param <F>
  *            Generic type of the candidate to enter the solution (fenotype).
  */
-public abstract class AbstractGA<G extends Number, F> {
+public abstract class AbstractGA<F> {
+
+	/**
+	 * A binary chromosome, whose genes are packed 64 to a word of a long
+	 * array, so that it is copied, recombined and compared a word at a time.
+	 * It caches its fitness until one of its genes is flipped. It also keeps a
+	 * {@link Zobrist} fingerprint of the loci whose gene is 1, so that the
+	 * fitness of a chromosome equal to one already evaluated is found in the
+	 * {@link AbstractGA#cache}. Otherwise, if a known fitness and the loci
+	 * changed since are recorded, the fitness is derived from them by
+	 * {@link AbstractGA#derivedFitness}.
+	 */
+	public class Chromosome {
+
+		/**
+		 * the genes, gene i being bit i % 64 of word i / 64; the bits past
+		 * the last locus are 0
+		 */
+		private final long[] words;
+
+		/**
+		 * the fitness of the chromosome, valid unless {@link #dirty} is set
+		 */
+		private double fitness;
+
+		/**
+		 * flag that indicates whether the genes changed since the fitness was
+		 * last computed
+		 */
+		private boolean dirty = true;
+
+		/**
+		 * the fingerprint of the genes
+		 */
+		private long fingerprint;
+
+		/**
+		 * flag that indicates whether {@link #fitness} holds the fitness of
+		 * the genes before the {@link #changed} loci were flipped
+		 */
+		private boolean derivable;
+
+		/**
+		 * the loci flipped since {@link #fitness} was known, in order, of
+		 * which there are at most {@link AbstractGA#maxDerivedLoci}
+		 */
+		private int[] changed;
+		private int changedCount;
+
+		/**
+		 * Creates a chromosome whose genes are all 0.
+		 */
+		public Chromosome() {
+			words = new long[(chromosomeSize + 63) >>> 6];
+		}
+
+		/**
+		 * Creates a copy of a chromosome, along with its fitness if it is
+		 * known.
+		 * 
+		 * @param other
+		 *            the chromosome being copied.
+		 */
+		public Chromosome(Chromosome other) {
+			words = other.words.clone();
+			fingerprint = other.fingerprint;
+			fitness = other.fitness;
+			dirty = other.dirty;
+			derivable = !other.dirty;
+		}
+
+		/**
+		 * @return The number of genes.
+		 */
+		public int size() {
+			return chromosomeSize;
+		}
+
+		/**
+		 * @param locus
+		 *            a position of the chromosome.
+		 * @return The gene at the locus, 0 or 1.
+		 */
+		public int get(int locus) {
+			return (int) (words[locus >>> 6] >>> locus) & 1;
+		}
+
+		/**
+		 * Sets the gene at a locus, flipping it if it differs.
+		 * 
+		 * @param locus
+		 *            a position of the chromosome.
+		 * @param gene
+		 *            the new gene, 0 or 1.
+		 */
+		public void set(int locus, int gene) {
+			if (get(locus) != gene)
+				flip(locus);
+		}
+
+		/**
+		 * Flips the gene at a locus.
+		 * 
+		 * @param locus
+		 *            a position of the chromosome.
+		 */
+		public void flip(int locus) {
+
+			words[locus >>> 6] ^= 1L << locus;
+			fingerprint ^= Zobrist.key(locus);
+			if (derivable) {
+				if (changedCount < maxDerivedLoci) {
+					if (changed == null)
+						changed = new int[maxDerivedLoci];
+					changed[changedCount++] = locus;
+				} else {
+					derivable = false;
+				}
+			}
+			dirty = true;
+
+		}
+
+		/**
+		 * @param from
+		 *            the locus the search starts from.
+		 * @return The first locus from the given one whose gene is 1, or -1
+		 *         if there is none.
+		 */
+		public int nextSetLocus(int from) {
+
+			int w = from >>> 6;
+			if (w >= words.length)
+				return -1;
+			long word = words[w] & (-1L << from);
+			while (word == 0) {
+				if (++w == words.length)
+					return -1;
+				word = words[w];
+			}
+
+			return (w << 6) + Long.numberOfTrailingZeros(word);
+
+		}
+
+		/**
+		 * Finds the adjacent loci whose genes are both 1, which are the bits
+		 * set in w & (w >>> 1) once the first bit of the next word is carried
+		 * into the last bit of each word w.
+		 * 
+		 * @param from
+		 *            the locus the search starts from.
+		 * @return The first locus j from the given one such that the genes at
+		 *         j and j + 1 are 1, or -1 if there is none.
+		 */
+		public int nextAdjacentPair(int from) {
+
+			for (int w = from >>> 6; w < words.length; w++) {
+				long next = w + 1 < words.length ? words[w + 1] << 63 : 0L;
+				long pairs = words[w] & (words[w] >>> 1 | next);
+				if (w == from >>> 6)
+					pairs &= -1L << from;
+				if (pairs != 0)
+					return (w << 6) + Long.numberOfTrailingZeros(pairs);
+			}
+
+			return -1;
+
+		}
+
+		/**
+		 * Replaces the genes in a segment of loci with the ones of another
+		 * chromosome, copying the words inside the segment and blending the
+		 * two words at its ends with masks.
+		 * 
+		 * @param other
+		 *            the chromosome the genes are taken from.
+		 * @param from
+		 *            the first locus of the segment.
+		 * @param to
+		 *            the locus following the segment.
+		 */
+		public void copySegment(Chromosome other, int from, int to) {
+
+			if (from >= to)
+				return;
+
+			int first = from >>> 6, last = (to - 1) >>> 6;
+			long head = -1L << from, tail = -1L >>> -to;
+			if (first == last)
+				head &= tail;
+
+			for (int w = first; w <= last; w++) {
+				long mask = w == first ? head : w == last ? tail : -1L;
+				for (long diff = (words[w] ^ other.words[w]) & mask; diff != 0; diff &= diff - 1) {
+					fingerprint ^= Zobrist.key((w << 6) + Long.numberOfTrailingZeros(diff));
+				}
+			}
+
+			words[first] = words[first] & ~head | other.words[first] & head;
+			if (last > first) {
+				System.arraycopy(other.words, first + 1, words, first + 1, last - first - 1);
+				words[last] = words[last] & ~tail | other.words[last] & tail;
+			}
+			dirty = true;
+			derivable = false;
+
+		}
+
+		/**
+		 * Finds the loci of a segment in which this chromosome and another
+		 * differ, from the bits set in the exclusive or of their words.
+		 * 
+		 * @param other
+		 *            the chromosome being compared.
+		 * @param from
+		 *            the first locus of the segment.
+		 * @param to
+		 *            the locus following the segment.
+		 * @param loci
+		 *            the array to which the loci found are appended, while it
+		 *            has room.
+		 * @param count
+		 *            the number of loci already in the array.
+		 * @return count plus the number of loci in which the chromosomes
+		 *         differ in the segment.
+		 */
+		public int differences(Chromosome other, int from, int to, int[] loci, int count) {
+
+			if (from >= to)
+				return count;
+
+			int first = from >>> 6, last = (to - 1) >>> 6;
+			for (int w = first; w <= last; w++) {
+				long diff = words[w] ^ other.words[w];
+				if (w == first)
+					diff &= -1L << from;
+				if (w == last)
+					diff &= -1L >>> -to;
+				for (; diff != 0 && count < loci.length; diff &= diff - 1) {
+					loci[count++] = (w << 6) + Long.numberOfTrailingZeros(diff);
+				}
+				count += Long.bitCount(diff);
+			}
+
+			return count;
+
+		}
+
+		/**
+		 * Counts the loci in which this chromosome and another differ, as the
+		 * bits set in the exclusive or of their words, stopping once a bound
+		 * is reached.
+		 * 
+		 * @param other
+		 *            the chromosome being compared.
+		 * @param bound
+		 *            the distance past which the count may stop.
+		 * @return The Hamming distance between the chromosomes, or a number
+		 *         at least bound if it is at least bound.
+		 */
+		public int distance(Chromosome other, int bound) {
+
+			int distance = 0;
+			for (int w = 0; w < words.length && distance < bound; w++) {
+				distance += Long.bitCount(words[w] ^ other.words[w]);
+			}
+
+			return distance;
+
+		}
+
+		/**
+		 * @param from
+		 *            the first locus of the segment.
+		 * @param to
+		 *            the locus following the segment, greater than from.
+		 * @return A hash of the genes in a segment of loci.
+		 */
+		public long segmentHash(int from, int to) {
+
+			long hash = 0L;
+			int first = from >>> 6, last = (to - 1) >>> 6;
+			for (int w = first; w <= last; w++) {
+				long word = words[w];
+				if (w == first)
+					word &= -1L << from;
+				if (w == last)
+					word &= -1L >>> -to;
+				hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+				hash ^= hash >>> 29;
+			}
+
+			return hash;
+
+		}
+
+		/**
+		 * @return The fingerprint of the genes.
+		 */
+		public long getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * Gives the fitness of the chromosome, computing it with
+		 * {@link AbstractGA#fitness} only if the genes changed since the last
+		 * call and the fingerprint is not in the {@link AbstractGA#cache}.
+		 * 
+		 * @return The fitness value of the chromosome.
+		 */
+		public double getFitness() {
+			if (dirty) {
+				double cached = cache == null ? Double.NaN : cache.get(fingerprint);
+				if (!Double.isNaN(cached)) {
+					fitness = cached;
+				} else {
+					if (!derivable)
+						fitness = AbstractGA.this.fitness(this);
+					else if (changedCount > 0)
+						fitness = derivedFitness(this, fitness, changed, changedCount);
+					if (cache != null)
+						cache.put(fingerprint, fitness);
+				}
+				dirty = false;
+				derivable = true;
+				changedCount = 0;
+			}
+			return fitness;
+		}
+
+		/**
+		 * Forces the fitness to be computed again on the next call to
+		 * {@link #getFitness()}.
+		 */
+		public void invalidateFitness() {
+			dirty = true;
+			derivable = false;
+		}
+
+		/**
+		 * Takes the fitness of another chromosome as the one from which the
+		 * fitness of this one is derived, if it is known and they differ in
+		 * at most {@link AbstractGA#maxDerivedLoci} loci.
+		 * 
+		 * @param base
+		 *            the chromosome this one was built from.
+		 * @param loci
+		 *            the loci in which the chromosomes differ.
+		 * @param count
+		 *            the number of loci.
+		 */
+		public void deriveFrom(Chromosome base, int[] loci, int count) {
+
+			if (base.dirty || count > maxDerivedLoci)
+				return;
+
+			if (changed == null)
+				changed = new int[maxDerivedLoci];
+			System.arraycopy(loci, 0, changed, 0, count);
+			changedCount = count;
+			fitness = base.fitness;
+			derivable = true;
+			dirty = true;
+
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("[");
+			for (int locus = 0; locus < chromosomeSize; locus++) {
+				sb.append(locus == 0 ? "" : ", ").append(get(locus));
+			}
+			return sb.append(']').toString();
+		}
 
-	@SuppressWarnings("serial")
-	public class Chromosome extends ArrayList<G> {
 	}
 
+	/**
+	 * A population of chromosomes, which keeps an index of their fitness in a
+	 * structure of arrays: the fitness of each chromosome, the positions of
+	 * the best and the worst ones and, once a rank is asked for, the
+	 * positions of all chromosomes sorted by fitness. The index is built from
+	 * the fitness cached by the chromosomes when it is first needed after the
+	 * population changed, so it is then queried in O(1) time with no call to
+	 * the chromosomes. Adding, removing and setting chromosomes invalidate the
+	 * index; changing the genes of the chromosomes of the population, as
+	 * {@link AbstractGA#Correct} and {@link AbstractGA#mutate(Population)} do,
+	 * must be followed by {@link #invalidate()}.
+	 */
 	@SuppressWarnings("serial")
 	public class Population extends ArrayList<Chromosome> {
+
+		/**
+		 * the fitness of each chromosome, and their positions in increasing
+		 * order of fitness, valid if {@link #ranked} is set
+		 */
+		private double[] fitness = new double[0];
+		private int[] order = new int[0];
+
+		/**
+		 * the position of the first best and the first worst chromosomes
+		 */
+		private int best, worst;
+
+		/**
+		 * flag that indicates whether the index is valid, for the population
+		 * as it was when its structure was last modified
+		 */
+		private boolean indexed, ranked;
+		private int indexedModCount;
+
+		/**
+		 * Discards the index, which is built again when next needed.
+		 */
+		public void invalidate() {
+			indexed = false;
+			ranked = false;
+		}
+
+		private void index() {
+
+			if (indexed && indexedModCount == modCount)
+				return;
+
+			int size = size();
+			if (fitness.length < size) {
+				fitness = new double[size];
+				order = new int[size];
+			}
+			best = worst = -1;
+			for (int k = 0; k < size; k++) {
+				double f = get(k).getFitness();
+				fitness[k] = f;
+				if (f > (best < 0 ? Double.NEGATIVE_INFINITY : fitness[best]))
+					best = k;
+				if (f < (worst < 0 ? Double.POSITIVE_INFINITY : fitness[worst]))
+					worst = k;
+			}
+			indexed = true;
+			ranked = false;
+			indexedModCount = modCount;
+
+		}
+
+		/**
+		 * @param index
+		 *            the position of a chromosome.
+		 * @return The fitness of the chromosome.
+		 */
+		public double getFitness(int index) {
+			index();
+			return fitness[index];
+		}
+
+		/**
+		 * @return The position of the first chromosome of highest fitness, or
+		 *         -1 if there is none.
+		 */
+		public int indexOfBest() {
+			index();
+			return best;
+		}
+
+		/**
+		 * @return The position of the first chromosome of lowest fitness, or
+		 *         -1 if there is none.
+		 */
+		public int indexOfWorst() {
+			index();
+			return worst;
+		}
+
+		/**
+		 * Gives the chromosome of a given rank, sorting the chromosomes by
+		 * fitness, with a heapsort of their positions, if they were not
+		 * sorted since the population changed.
+		 * 
+		 * @param rank
+		 *            the rank, from 0 for the worst chromosome to size() - 1
+		 *            for the best one.
+		 * @return The chromosome of the rank.
+		 */
+		public Chromosome getRanked(int rank) {
+
+			index();
+			if (!ranked) {
+				int size = size();
+				for (int k = 0; k < size; k++) {
+					order[k] = k;
+				}
+				for (int k = size / 2 - 1; k >= 0; k--) {
+					siftDown(k, size);
+				}
+				for (int end = size - 1; end > 0; end--) {
+					int top = order[0];
+					order[0] = order[end];
+					order[end] = top;
+					siftDown(0, end);
+				}
+				ranked = true;
+			}
+
+			return get(order[rank]);
+
+		}
+
+		/**
+		 * Moves a position down the max-heap order[0..end) of positions.
+		 */
+		private void siftDown(int k, int end) {
+			int p = order[k];
+			for (int child = 2 * k + 1; child < end; child = 2 * k + 1) {
+				if (child + 1 < end && fitness[order[child + 1]] > fitness[order[child]])
+					child++;
+				if (fitness[order[child]] <= fitness[p])
+					break;
+				order[k] = order[child];
+				k = child;
+			}
+			order[k] = p;
+		}
+
+		@Override
+		public Chromosome set(int index, Chromosome element) {
+			invalidate();
+			return super.set(index, element);
+		}
+
+	}
+
+	/**
+	 * An index of the chromosomes of a population which finds the ones
+	 * within a Hamming distance r of a given chromosome without comparing it
+	 * with all of them. The loci are split into r + 1 segments, so two
+	 * chromosomes at distance at most r have an equal segment; each
+	 * chromosome is bucketed by the hash of each of its segments, and only
+	 * the chromosomes sharing a bucket with the one searched for are
+	 * compared with {@link Chromosome#distance}. With r = 0 the only segment
+	 * is the whole chromosome, whose hash is its fingerprint, so exact twins
+	 * are found in O(1) expected time. The index holds the genes the
+	 * chromosomes had when it was built.
+	 */
+	protected class TwinIndex {
+
+		private final Population population;
+
+		private final int radius;
+
+		/**
+		 * the first locus of each segment, followed by the chromosome size,
+		 * or null if every chromosome is within the radius of every other
+		 */
+		private final int[] bounds;
+
+		/**
+		 * the first entry of each bucket, entry b * n + m standing for
+		 * segment b of chromosome m of a population of n chromosomes
+		 */
+		private final Map<Long, Integer> heads = new HashMap<Long, Integer>();
+
+		/**
+		 * the entry following each entry in its bucket, or -1; the
+		 * chromosomes of a bucket are in increasing order
+		 */
+		private final int[] next;
+
+		/**
+		 * Indexes a population.
+		 * 
+		 * @param population
+		 *            the population being indexed.
+		 * @param radius
+		 *            the largest distance of the chromosomes being found.
+		 */
+		public TwinIndex(Population population, int radius) {
+
+			this.population = population;
+			this.radius = radius;
+			int n = population.size();
+
+			if (radius >= chromosomeSize) {
+				bounds = null;
+				next = null;
+				return;
+			}
+
+			int segments = radius + 1;
+			bounds = new int[segments + 1];
+			for (int b = 0; b <= segments; b++) {
+				bounds[b] = (int) ((long) b * chromosomeSize / segments);
+			}
+
+			next = new int[segments * n];
+			for (int m = n - 1; m >= 0; m--) {
+				for (int b = 0; b < segments; b++) {
+					Integer head = heads.put(key(population.get(m), b), b * n + m);
+					next[b * n + m] = head == null ? -1 : head;
+				}
+			}
+
+		}
+
+		private long key(Chromosome c, int b) {
+			long hash = bounds.length == 2 ? c.getFingerprint() : c.segmentHash(bounds[b], bounds[b + 1]);
+			return hash + b * 0x9E3779B97F4A7C15L;
+		}
+
+		/**
+		 * Finds the next chromosome of the population near a chromosome.
+		 * 
+		 * @param c
+		 *            the chromosome searched for.
+		 * @param after
+		 *            the position the search starts after.
+		 * @return The first position of the population after the given one
+		 *         whose chromosome is within the radius of c, or -1 if there
+		 *         is none.
+		 */
+		public int next(Chromosome c, int after) {
+
+			int n = population.size();
+			if (bounds == null)
+				return after + 1 < n ? after + 1 : -1;
+
+			int found = -1;
+			for (int b = 0; b < bounds.length - 1; b++) {
+				Integer head = heads.get(key(c, b));
+				for (int e = head == null ? -1 : head; e >= 0; e = next[e]) {
+					int m = e % n;
+					if (found >= 0 && m >= found)
+						break;
+					if (m > after && c.distance(population.get(m), radius + 1) <= radius) {
+						found = m;
+						break;
+					}
+				}
+			}
+
+			return found;
+
+		}
+
 	}
 
 	/**
@@ -37,15 +679,36 @@ public abstract class AbstractGA<G extends Number, F> {
     public static Double targetCost = 0.0;
 
 	/**
-	 * a random number generator
+	 * the number of entries of the {@link #cache}, or 0 to disable it; it is
+	 * set by the system property qbf.cache
+	 */
+	public static int cacheCapacity = Integer.getInteger("qbf.cache", 1 << 16);
+
+	/**
+	 * the number of threads repairing and evaluating the chromosomes of a
+	 * population, and mutating them; it is set by the system property
+	 * qbf.parallelism
+	 */
+	public static int parallelism = Integer.getInteger("qbf.parallelism", 1);
+
+	/**
+	 * the pools running the parallel steps, by {@link #parallelism}, each
+	 * shared by the searches with that parallelism; a pool is kept when the
+	 * parallelism changes, so that no pool is left running unreferenced
 	 */
-	public static final Random rng = new Random(0);
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<Integer, ForkJoinPool>();
 
 	/**
 	 * the objective function being optimized
 	 */
 	protected Evaluator<F> ObjFunction;
 
+	/**
+	 * the fitness of the chromosomes already evaluated, by fingerprint, or
+	 * null if disabled
+	 */
+	protected EvaluationCache cache;
+
 	/**
 	 * maximum number of generations being executed
 	 */
@@ -66,6 +729,12 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected double mutationRate;
 
+	/**
+	 * the largest number of changed loci from which the fitness of a
+	 * chromosome is derived instead of evaluated
+	 */
+	protected int maxDerivedLoci;
+
 	/**
 	 * the best solution cost
 	 */
@@ -79,6 +748,13 @@ public abstract class AbstractGA<G extends Number, F> {
         
     public String contrucao = "padrao";
 
+	/**
+	 * flag that indicates whether the steady-state engine is used instead of
+	 * the generational one; it is set by the system property
+	 * qbf.steadystate
+	 */
+	public boolean steadyState = Boolean.getBoolean("qbf.steadystate");
+
 	/**
 	 * the best solution
 	 */
@@ -89,6 +765,19 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Chromosome bestChromosome;
 
+	/**
+	 * the random number generator of the search, from which all its random
+	 * choices are drawn
+	 */
+	protected final Random rng;
+
+	/**
+	 * the island model this search evolves an island of, or null, and the
+	 * index of the island
+	 */
+	IslandModel<F> islands;
+	int island;
+
 	/**
 	 * Creates a new solution which is empty, i.e., does not contain any
 	 * candidate solution element.
@@ -119,7 +808,8 @@ public abstract class AbstractGA<G extends Number, F> {
 	/**
 	 * Determines the fitness for a given chromosome. The fitness should be a
 	 * function strongly correlated to the objective function under
-	 * consideration.
+	 * consideration. It is called through {@link Chromosome#getFitness()},
+	 * which evaluates each chromosome once per change of its genes.
 	 * 
 	 * @param chromosome
 	 *            The genotype being considered for fitness evaluation.
@@ -127,6 +817,27 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected abstract Double fitness(Chromosome chromosome);
 
+	/**
+	 * Determines the fitness of a chromosome from the fitness it had before
+	 * some of its loci were flipped. It is called by
+	 * {@link Chromosome#getFitness()} when at most {@link #maxDerivedLoci}
+	 * loci changed since the fitness was known. This implementation ignores
+	 * the known fitness and calls {@link #fitness(Chromosome)}.
+	 * 
+	 * @param chromosome
+	 *            The genotype being considered for fitness evaluation.
+	 * @param baseFitness
+	 *            The fitness of the genotype before the loci were flipped.
+	 * @param loci
+	 *            The loci flipped, in order.
+	 * @param count
+	 *            The number of loci flipped.
+	 * @return The fitness value for the input chromosome.
+	 */
+	protected Double derivedFitness(Chromosome chromosome, double baseFitness, int[] loci, int count) {
+		return fitness(chromosome);
+	}
+
 	/**
 	 * Mutates a given locus of the chromosome. This method should be preferably
 	 * called with an expected frequency determined by the {@link #mutationRate}.
@@ -139,44 +850,80 @@ public abstract class AbstractGA<G extends Number, F> {
 	protected abstract void mutateGene(Chromosome chromosome, Integer locus);
 
 	/**
-	 * The constructor for the GA class.
+	 * The constructor for the GA class. The population has 7 log2 n
+	 * chromosomes, rounded up to an even number, for a domain of size n,
+	 * and the random number generator is seeded with 0.
 	 * 
 	 * @param objFunction
 	 *            The objective function being optimized.
 	 * @param generations
 	 *            Number of generations to be executed.
 	 * @param popSize
-	 *            Population size.
+	 *            Population size, which is not used.
 	 * @param mutationRate
 	 *            The mutation rate.
 	 */
 	public AbstractGA(Evaluator<F> objFunction, Integer generations, Integer popSize, Double mutationRate) {
+		this(objFunction, generations, 0, mutationRate, 0L);
+	}
+
+	/**
+	 * The constructor for the GA class, with a given population size and
+	 * seed.
+	 * 
+	 * @param objFunction
+	 *            The objective function being optimized.
+	 * @param generations
+	 *            Number of generations to be executed.
+	 * @param popSize
+	 *            Population size, rounded up to an even number, or 0 for 7
+	 *            log2 n chromosomes for a domain of size n.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param seed
+	 *            The seed of the random number generator.
+	 */
+	public AbstractGA(Evaluator<F> objFunction, Integer generations, Integer popSize, Double mutationRate, long seed) {
 		
 		//System.out.print("FitRate:"+ this.fitRate+"\t");
 		//System.out.print("sizeRate:"+ this.sizeRate+"\t");
-		this.ObjFunction = objFunction;
+		this.ObjFunction = InstrumentedEvaluator.wrap(objFunction);
+		this.cache = cacheCapacity > 0 ? new EvaluationCache(cacheCapacity) : null;
 		this.generations = generations;
 	
-		int logL = 7 * (int)(Math.log(this.ObjFunction.getDomainSize())/ Math.log(2) );
+		int logL = popSize > 0 ? popSize : 7 * (int)(Math.log(this.ObjFunction.getDomainSize())/ Math.log(2) );
 
 		this.popSize = ((logL % 2 == 0)?logL:logL+1);
 		//System.out.print("Populacao:"+ this.popSize+"\t");
 		this.chromosomeSize = this.ObjFunction.getDomainSize();
 		this.mutationRate = mutationRate;
+		this.maxDerivedLoci = chromosomeSize / 8;
+		this.rng = new Random(seed);
+	}
+
+	/**
+	 * @return The size of the population.
+	 */
+	public int getPopulationSize() {
+		return popSize;
 	}
 
 	/**
 	 * The GA mainframe. It starts by initializing a population of chromosomes.
 	 * It then enters a generational loop, in which each generation goes the
 	 * following steps: parent selection, crossover, mutation, population update
-	 * and best solution update.
+	 * and best solution update. If {@link #steadyState} is set, the
+	 * population is evolved by {@link #solveSteadyState()} instead.
 	 * 
 	 * @return The best feasible solution obtained throughout all iterations.
 	 */
 	public Solution<F> solve() {
 
+		if (steadyState)
+			return solveSteadyState();
+
 		/* starts the initial population */
-		Population population = Correct(initializePopulation());
+		Population population = evaluate(Correct(initializePopulation()));
 		
 		//System.out.println(population.toString());
 		
@@ -190,39 +937,194 @@ public abstract class AbstractGA<G extends Number, F> {
                 
         long endTime = System.currentTimeMillis() + 120000;
                 
-        for (int g = 1; g <= generations && System.currentTimeMillis() < endTime; g++) {
+        for (int g = 1; g <= generations && System.currentTimeMillis() < endTime
+                && (islands == null || !islands.isStopped()); g++) {
             Population parents = selectParents(population);
 
             Population offsprings = Correct(crossover(parents));
 
-            Population mutants = Correct(mutate(offsprings));
+            Population mutants = evaluate(Correct(mutate(offsprings)));
 
             Population newpopulation = selectPopulation(mutants);
 
             if (contrucao.equals("padrao")) {
-                newpopulation = Correct(newpopulation);
+                newpopulation = evaluate(Correct(newpopulation));
             } else
-                newpopulation = Correct(diversifyPopulation(newpopulation));
+                newpopulation = evaluate(Correct(diversifyPopulation(newpopulation)));
 
             population = newpopulation;
 
+            if (islands != null)
+                population = islands.migrate(this, g, population);
+
             bestChromosome = getBestChromosome(population);
 
-            if (fitness(bestChromosome) > bestSol.cost) {
+            if (bestChromosome.getFitness() > bestSol.cost) {
                 bestSol = decode(bestChromosome);
                 // if (verbose)
                 // System.out.println("(Gen. " + g + ") BestSol = " + bestSol);
             }
             
             if(isTTTPlotExecution && targetCost <= bestSol.cost) {
+                reportEvaluations();
                 return bestSol;
             }
 
         }
 
+		reportEvaluations();
 		return bestSol;
 	}
 
+	/**
+	 * The steady-state GA. The population is kept as a binary heap ordered
+	 * by fitness, whose root is the worst chromosome. Each step selects two
+	 * parents by tournament, recombines them into two offspring, which are
+	 * mutated and repaired one at a time, and each offspring better than the
+	 * worst chromosome replaces it. An offspring equal to a member of the
+	 * population, as told by its fingerprint, is discarded, without being
+	 * evaluated if it needs no repair. The search produces as many
+	 * offspring as {@link #generations} generations of the generational
+	 * engine, and the best solution is updated after each one.
+	 * 
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	protected Solution<F> solveSteadyState() {
+
+		Population heap = evaluate(Correct(initializePopulation()));
+		Map<Long, Integer> fingerprints = new HashMap<Long, Integer>();
+		for (Chromosome c : heap) {
+			fingerprints.merge(c.getFingerprint(), 1, Integer::sum);
+		}
+		for (int k = heap.size() / 2 - 1; k >= 0; k--) {
+			siftDown(heap, k);
+		}
+
+		bestChromosome = getBestChromosome(heap);
+		bestSol = decode(bestChromosome);
+
+		int[] innerLoci = new int[maxDerivedLoci], outerLoci = new int[maxDerivedLoci];
+		Population offsprings = new Population();
+		long budget = (long) generations * popSize, produced = 0;
+		long endTime = System.currentTimeMillis() + 120000;
+
+		while (produced < budget && System.currentTimeMillis() < endTime
+				&& (islands == null || !islands.isStopped())) {
+
+			offsprings.clear();
+			recombine(tournament(heap), tournament(heap), innerLoci, outerLoci, offsprings);
+
+			for (Chromosome child : offsprings) {
+				produced++;
+				mutate(child, rng.nextLong());
+				if (child.nextAdjacentPair(0) < 0 && fingerprints.containsKey(child.getFingerprint()))
+					continue;
+				correct(child);
+				if (fingerprints.containsKey(child.getFingerprint()))
+					continue;
+
+				Chromosome worst = heap.get(0);
+				if (child.getFitness() <= worst.getFitness())
+					continue;
+				fingerprints.computeIfPresent(worst.getFingerprint(), (fp, n) -> n > 1 ? n - 1 : null);
+				fingerprints.merge(child.getFingerprint(), 1, Integer::sum);
+				heap.set(0, child);
+				siftDown(heap, 0);
+
+				if (child.getFitness() > bestChromosome.getFitness()) {
+					bestChromosome = child;
+					bestSol = decode(child);
+					if (isTTTPlotExecution && targetCost <= bestSol.cost) {
+						reportEvaluations();
+						return bestSol;
+					}
+				}
+			}
+
+			if (islands != null && produced % popSize < offsprings.size()) {
+				islands.migrate(this, (int) (produced / popSize), heap);
+				fingerprints.clear();
+				for (Chromosome c : heap) {
+					fingerprints.merge(c.getFingerprint(), 1, Integer::sum);
+				}
+				for (int k = heap.size() / 2 - 1; k >= 0; k--) {
+					siftDown(heap, k);
+				}
+				Chromosome best = getBestChromosome(heap);
+				if (best.getFitness() > bestChromosome.getFitness()) {
+					bestChromosome = best;
+					bestSol = decode(best);
+				}
+			}
+
+		}
+
+		reportEvaluations();
+		return bestSol;
+
+	}
+
+	/**
+	 * Moves a chromosome of a heap down until its children are not worse.
+	 */
+	private void siftDown(Population heap, int k) {
+
+		Chromosome c = heap.get(k);
+		double fitness = c.getFitness();
+		int size = heap.size();
+		for (int child = 2 * k + 1; child < size; child = 2 * k + 1) {
+			if (child + 1 < size && heap.get(child + 1).getFitness() < heap.get(child).getFitness())
+				child++;
+			if (heap.get(child).getFitness() >= fitness)
+				break;
+			heap.set(k, heap.get(child));
+			k = child;
+		}
+		heap.set(k, c);
+
+	}
+
+	/**
+	 * Prints the counters of the evaluations made by the search, if it is
+	 * instrumented, and the hit rate of the {@link #cache}, if verbose.
+	 */
+	private void reportEvaluations() {
+		InstrumentedEvaluator.report(ObjFunction);
+		if (verbose && cache != null)
+			System.out.println(cache);
+	}
+
+	/**
+	 * Applies an action to each chromosome of a population, in parallel on a
+	 * {@link ForkJoinPool} of {@link #parallelism} threads if it is greater
+	 * than 1. Each thread evaluates the chromosomes with its own scratch
+	 * state, and the chromosomes must be distinct objects.
+	 * 
+	 * @param population
+	 *            A population of chromosomes.
+	 * @param action
+	 *            The action, given the index of each chromosome.
+	 */
+	protected void forEach(Population population, IntConsumer action) {
+
+		int size = population.size();
+		if (parallelism <= 1 || size < 2) {
+			for (int k = 0; k < size; k++) {
+				action.accept(k);
+			}
+			return;
+		}
+
+		pool(parallelism).submit(() -> IntStream.range(0, size).parallel().forEach(action)).join();
+
+	}
+
+	private static ForkJoinPool pool(int parallelism) {
+		synchronized (pools) {
+			return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+		}
+	}
+
 	/**
 	 * Randomly generates an initial population to start the GA.
 	 * 
@@ -250,17 +1152,9 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Chromosome getBestChromosome(Population population) {
 
-		double bestFitness = Double.NEGATIVE_INFINITY;
-		Chromosome bestChromosome = null;
-		for (Chromosome c : population) {
-			double fitness = fitness(c);
-			if (fitness > bestFitness) {
-				bestFitness = fitness;
-				bestChromosome = c;
-			}
-		}
+		int best = population.indexOfBest();
+		return best < 0 ? null : population.get(best);
 
-		return bestChromosome;
 	}
 
 	/**
@@ -273,17 +1167,9 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Chromosome getWorseChromosome(Population population) {
 
-		double worseFitness = Double.POSITIVE_INFINITY;
-		Chromosome worseChromosome = null;
-		for (Chromosome c : population) {
-			double fitness = fitness(c);
-			if (fitness < worseFitness) {
-				worseFitness = fitness;
-				worseChromosome = c;
-			}
-		}
+		int worse = population.indexOfWorst();
+		return worse < 0 ? null : population.get(worse);
 
-		return worseChromosome;
 	}
 
 	/**
@@ -301,21 +1187,31 @@ public abstract class AbstractGA<G extends Number, F> {
 		Population parents = new Population();
 
 		while (parents.size() < popSize) {
-			int index1 = rng.nextInt(popSize);
-			Chromosome parent1 = population.get(index1);
-			int index2 = rng.nextInt(popSize);
-			Chromosome parent2 = population.get(index2);
-			if (fitness(parent1) > fitness(parent2)) {
-				parents.add(parent1);
-			} else {
-				parents.add(parent2);
-			}
+			parents.add(tournament(population));
 		}
 
 		return parents;
 
 	}
 
+	/**
+	 * Randomly takes two chromosomes of a population and selects the best.
+	 * 
+	 * @param population
+	 *            The current population.
+	 * @return The selected chromosome.
+	 */
+	protected Chromosome tournament(Population population) {
+
+		int index1 = rng.nextInt(popSize);
+		Chromosome parent1 = population.get(index1);
+		int index2 = rng.nextInt(popSize);
+		Chromosome parent2 = population.get(index2);
+
+		return parent1.getFitness() > parent2.getFitness() ? parent1 : parent2;
+
+	}
+
 	/**
 	 * The crossover step takes the parents generated by {@link #selectParents}
 	 * and recombine their genes to generate new chromosomes (offsprings). The
@@ -329,6 +1225,11 @@ public abstract class AbstractGA<G extends Number, F> {
 	 * Offspring 1: X1 ... Xi | Yi+1 ... Yj | Xj+1 ... Xn
 	 * Offspring 2: Y1 ... Yi | Xi+1 ... Xj | Yj+1 ... Yn
 	 * 
+	 * Each offspring is a copy of a parent whose segment between P1 and P2 is
+	 * copied from the other, a word of genes at a time. It derives its
+	 * fitness from the parent it differs less from: the parents differ in
+	 * some loci inside and some loci outside the segment.
+	 * 
 	 * @param parents
 	 *            The selected parents for crossover.
 	 * @return The resulting offsprings.
@@ -336,41 +1237,66 @@ public abstract class AbstractGA<G extends Number, F> {
 	protected Population crossover(Population parents) {
 
 		Population offsprings = new Population();
+		int[] innerLoci = new int[maxDerivedLoci], outerLoci = new int[maxDerivedLoci];
 
 		for (int i = 0; i < popSize; i = i + 2) {
+			recombine(parents.get(i), parents.get(i + 1), innerLoci, outerLoci, offsprings);
+		}
 
-			Chromosome parent1 = parents.get(i);
-			Chromosome parent2 = parents.get(i + 1);
-
-			int crosspoint1 = rng.nextInt(chromosomeSize + 1);
-			int crosspoint2 = crosspoint1 + rng.nextInt((chromosomeSize + 1) - crosspoint1);
-
-			Chromosome offspring1 = new Chromosome();
-			Chromosome offspring2 = new Chromosome();
-
-			for (int j = 0; j < chromosomeSize; j++) {
-				if (j >= crosspoint1 && j < crosspoint2) {
-					offspring1.add(parent2.get(j));
-					offspring2.add(parent1.get(j));
-				} else {
-					offspring1.add(parent1.get(j));
-					offspring2.add(parent2.get(j));
-				}
-			}
+		return offsprings;
 
-			offsprings.add(offspring1);
-			offsprings.add(offspring2);
+	}
 
+	/**
+	 * Recombines two parents by the 2-point crossover described in
+	 * {@link #crossover}.
+	 * 
+	 * @param parent1
+	 *            The first parent.
+	 * @param parent2
+	 *            The second parent.
+	 * @param innerLoci
+	 *            Scratch array of {@link #maxDerivedLoci} loci.
+	 * @param outerLoci
+	 *            Scratch array of {@link #maxDerivedLoci} loci.
+	 * @param offsprings
+	 *            The population the two offsprings are added to.
+	 */
+	protected void recombine(Chromosome parent1, Chromosome parent2, int[] innerLoci, int[] outerLoci,
+			Population offsprings) {
+
+		int crosspoint1 = rng.nextInt(chromosomeSize + 1);
+		int crosspoint2 = crosspoint1 + rng.nextInt((chromosomeSize + 1) - crosspoint1);
+
+		Chromosome offspring1 = new Chromosome(parent1);
+		offspring1.copySegment(parent2, crosspoint1, crosspoint2);
+		Chromosome offspring2 = new Chromosome(parent2);
+		offspring2.copySegment(parent1, crosspoint1, crosspoint2);
+
+		int inner = parent1.differences(parent2, crosspoint1, crosspoint2, innerLoci, 0);
+		int outer = parent1.differences(parent2, 0, crosspoint1, outerLoci, 0);
+		outer = parent1.differences(parent2, crosspoint2, chromosomeSize, outerLoci, outer);
+
+		if (inner <= outer) {
+			offspring1.deriveFrom(parent1, innerLoci, inner);
+			offspring2.deriveFrom(parent2, innerLoci, inner);
+		} else {
+			offspring1.deriveFrom(parent2, outerLoci, outer);
+			offspring2.deriveFrom(parent1, outerLoci, outer);
 		}
 
-		return offsprings;
+		offsprings.add(offspring1);
+		offsprings.add(offspring2);
 
 	}
 
 	/**
 	 * The mutation step takes the offsprings generated by {@link #crossover}
 	 * and to each possible locus, perform a mutation with the expected
-	 * frequency given by {@link #mutationRate}.
+	 * frequency given by {@link #mutationRate}. Each offspring is mutated
+	 * with its own random stream, whose seeds are drawn in order from
+	 * {@link #rng} before the offsprings are mutated, so the mutations do not
+	 * depend on the {@link #parallelism}.
 	 * 
 	 * @param offsprings
 	 *            The offsprings chromosomes generated by the
@@ -379,22 +1305,43 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Population mutate(Population offsprings) {
 
-		for (Chromosome c : offsprings) {
-			for (int locus = 0; locus < chromosomeSize; locus++) {
-				if (rng.nextDouble() < mutationRate) {
-					mutateGene(c, locus);
-				}
-			}
+		long[] seeds = new long[offsprings.size()];
+		for (int k = 0; k < seeds.length; k++) {
+			seeds[k] = rng.nextLong();
 		}
 
+		forEach(offsprings, k -> mutate(offsprings.get(k), seeds[k]));
+		offsprings.invalidate();
+
 		return offsprings;
 	}
 
+	/**
+	 * Mutates each locus of a chromosome with the probability given by
+	 * {@link #mutationRate}.
+	 * 
+	 * @param c
+	 *            The chromosome being mutated.
+	 * @param seed
+	 *            The seed of the random stream of the chromosome.
+	 */
+	protected void mutate(Chromosome c, long seed) {
+
+		SplittableRandom stream = new SplittableRandom(seed);
+		for (int locus = 0; locus < chromosomeSize; locus++) {
+			if (stream.nextDouble() < mutationRate) {
+				mutateGene(c, locus);
+			}
+		}
+
+	}
+
 	/**
 	 * Updates the population that will be considered for the next GA
 	 * generation. The method used for updating the population is the elitist,
 	 * which simply takes the worse chromosome from the offsprings and replace
-	 * it with the best chromosome from the previous generation.
+	 * it, in its position, with the best chromosome from the previous
+	 * generation.
 	 * 
 	 * @param offsprings
 	 *            The offsprings generated by {@link #crossover}.
@@ -402,79 +1349,108 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Population selectPopulation(Population offsprings) {
 
-		Chromosome worse = getWorseChromosome(offsprings);
-		if (fitness(worse) < fitness(bestChromosome)) {
-			offsprings.remove(worse);
-			offsprings.add(bestChromosome);
+		int worse = offsprings.indexOfWorst();
+		if (offsprings.getFitness(worse) < bestChromosome.getFitness()) {
+			offsprings.set(worse, bestChromosome);
 		}
 
 		return offsprings;
 	}
 	
+	/**
+	 * Repairs the chromosomes of a population which set two adjacent genes
+	 * to 1, keeping the better of clearing either gene, in parallel if
+	 * {@link #parallelism} is greater than 1.
+	 * 
+	 * @param p
+	 *            A population of distinct chromosomes.
+	 * @return The population, repaired.
+	 */
 	public Population Correct(Population p){
-        for(int i = 0; i < p.size(); i++){
-            Chromosome c = p.get(i);
-            
-            for(int j = 0; j < c.size() - 1; j++){
-                if(c.get(j).intValue() == 1 && c.get(j + 1).intValue() == 1){                           
-                    Integer num = 0, num2 = 1;              
-                    c.set(j, (G) num);
-                    
-                    Double a = fitness(c);
-                    
-                    c.set(j, (G) num2);
-                    c.set(j + 1, (G) num);
-                    
-                    Double b = fitness(c);
-                    
-                    if(a > b){
-                        c.set(j, (G) num);
-                        c.set(j + 1, (G) num2);
-                    } else {
-                        c.set(j, (G) num2);
-                        c.set(j + 1, (G) num);
-                    }
-                }
-            }
-            
-            p.set(i, c);
-        }
+        forEach(p, i -> correct(p.get(i)));
+        p.invalidate();
                         
         return p;
     }
+	/**
+	 * Repairs a chromosome which sets two adjacent genes to 1, keeping the
+	 * better of clearing either gene. This implementation evaluates the
+	 * chromosome with each gene cleared; problems able to evaluate the
+	 * removal of a gene incrementally should override it.
+	 * 
+	 * @param c
+	 *            The chromosome being repaired.
+	 */
+	protected void correct(Chromosome c) {
+
+		for (int j = c.nextAdjacentPair(0); j >= 0; j = c.nextAdjacentPair(j + 1)) {
+			c.set(j, 0);
+			double a = c.getFitness();
+
+			c.set(j, 1);
+			c.set(j + 1, 0);
+			double b = c.getFitness();
+
+			if (a > b) {
+				c.set(j, 0);
+				c.set(j + 1, 1);
+			}
+		}
+
+	}
+
+	/**
+	 * Evaluates the chromosomes of a population which changed since they
+	 * were last evaluated, in parallel if {@link #parallelism} is greater
+	 * than 1.
+	 * 
+	 * @param p
+	 *            A population of distinct chromosomes.
+	 * @return The population, evaluated.
+	 */
+	protected Population evaluate(Population p) {
+
+		forEach(p, i -> p.get(i).getFitness());
+		p.invalidate();
+		return p;
+
+	}
+
 	// fazer pela variancia do fitness
 	//se tiver alta, entao tem muita diversidade
 	//se tiver baixa, entao tem pouca diversidade
 	
 	//olhar a taxa de mutacao por 1/l
 	
+	/**
+	 * Mutates a random gene of each chromosome whose fitness is less than
+	 * {@link #fitRate} of the best one, once for each following chromosome
+	 * of the population which differs from it in less than {@link #sizeRate}
+	 * of the loci. The near twins are found through a {@link TwinIndex}.
+	 * 
+	 * @param p
+	 *            An evaluated population.
+	 * @return The population, diversified.
+	 */
 	public Population diversifyPopulation(Population p){
-		Random rnd = new Random();
-		
-		double fit = fitness(getBestChromosome(p));
 
-		
-		for(int i = 0; i < p.size(); i++){
-			if(fitness(p.get(i)) / fit >= fitRate) continue;
-			
-			for(int j = i + 1; j < p.size(); j++){				
-				int cont = 0;
-				
-				for(int k = 0; k < p.get(i).size(); k++){
-					if(p.get(i).get(k).intValue() != p.get(j).get(k).intValue()){
-						cont++;
-						
-						if(cont >= sizeRate * ObjFunction.getDomainSize())
-							break;
-					}
-				}
-				
-				if(cont < sizeRate * ObjFunction.getDomainSize()){;
-					mutateGene(p.get(i), rnd.nextInt(ObjFunction.getDomainSize()));
-				}
+		double fit = getBestChromosome(p).getFitness();
+		int radius = (int) Math.ceil(sizeRate * ObjFunction.getDomainSize()) - 1;
+		if (radius < 0)
+			return p;
+
+		TwinIndex twins = new TwinIndex(p, radius);
+		for (int i = 0; i < p.size(); i++) {
+			Chromosome c = p.get(i);
+			if (c.getFitness() / fit >= fitRate)
+				continue;
+
+			for (int j = twins.next(c, i); j >= 0; j = twins.next(c, j)) {
+				mutateGene(c, rng.nextInt(ObjFunction.getDomainSize()));
 			}
 		}
-		//System.out.println("Tivemos "+count+" gemeos de "+ popSize+" da populacao");
+
+		p.invalidate();
 		return p;
 	}
 
@@ -0,0 +1,238 @@
+package ga.metaheuristics.ga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ga.solutions.Solution;
+
+/**
+ * Island model of the GA: several independent populations, each evolved by
+ * its own {@link AbstractGA} on its own thread, which periodically send
+ * copies of their best chromosomes to each other. Every
+ * {@link #migrationInterval} generations an island sends its
+ * {@link #migrants} best chromosomes to the next island of a ring or to a
+ * random one, and replaces its worst chromosomes with the ones it received
+ * since the last migration.
+ *
+ * The chromosomes travel through one exchange buffer per island, an atomic
+ * reference which the sender overwrites and the receiver empties, so
+ * neither ever waits for the other; the migrants not received before the
+ * next ones arrive are lost. In a TTT plot execution, all islands stop as
+ * soon as one of them reaches the target.
+ *
+ * Island k draws all its random choices, including the destinations of its
+ * migrants, from its own generator, seeded with the seed of the model plus
+ * k, so runs with the same seed and islands are reproducible up to the
+ * timing of the migrations, and the islands never contend for a generator.
+ *
+ * @param <F>
+ *            Generic type of the candidate to enter the solution (fenotype).
+ */
+public class IslandModel<F> {
+
+	/**
+	 * The islands an island sends its chromosomes to.
+	 */
+	public enum Topology {
+		RING, RANDOM
+	}
+
+	/**
+	 * Creates the search of an island.
+	 */
+	public interface Factory<F> {
+
+		/**
+		 * @param populationSize
+		 *            the population size of the search.
+		 * @param seed
+		 *            the seed of the random number generator of the search.
+		 * @return The search of an island.
+		 */
+		AbstractGA<F> create(int populationSize, long seed);
+
+	}
+
+	/**
+	 * the searches evolving the populations of the islands
+	 */
+	private final List<AbstractGA<F>> islands = new ArrayList<AbstractGA<F>>();
+
+	/**
+	 * the chromosomes sent to each island and not yet received
+	 */
+	private final List<AtomicReference<List<AbstractGA<F>.Chromosome>>> buffers = new ArrayList<AtomicReference<List<AbstractGA<F>.Chromosome>>>();
+
+	/**
+	 * the number of generations between two migrations
+	 */
+	protected final int migrationInterval;
+
+	/**
+	 * the number of chromosomes sent by an island at each migration
+	 */
+	protected final int migrants;
+
+	protected final Topology topology;
+
+	/**
+	 * flag that indicates whether the islands should stop
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor for the IslandModel class.
+	 *
+	 * @param factory
+	 *            Creates the search of each island.
+	 * @param islandCount
+	 *            The number of islands.
+	 * @param islandSize
+	 *            The population size of each island, rounded up to an even
+	 *            number.
+	 * @param migrationInterval
+	 *            The number of generations between two migrations.
+	 * @param migrants
+	 *            The number of chromosomes sent by an island at each
+	 *            migration.
+	 * @param topology
+	 *            The islands each island sends its chromosomes to.
+	 * @param seed
+	 *            The seed of the first island, the seed of island k being
+	 *            seed + k.
+	 */
+	public IslandModel(Factory<F> factory, int islandCount, int islandSize, int migrationInterval, int migrants,
+			Topology topology, long seed) {
+
+		this.migrationInterval = migrationInterval;
+		this.migrants = Math.min(migrants, islandSize);
+		this.topology = topology;
+
+		for (int k = 0; k < islandCount; k++) {
+			AbstractGA<F> ga = factory.create(islandSize + (islandSize & 1), seed + k);
+			if (ga.getPopulationSize() != islandSize + (islandSize & 1))
+				throw new IllegalArgumentException("Island of " + ga.getPopulationSize() + " chromosomes instead of "
+						+ islandSize);
+			ga.islands = this;
+			ga.island = k;
+			islands.add(ga);
+			buffers.add(new AtomicReference<List<AbstractGA<F>.Chromosome>>());
+		}
+
+	}
+
+	/**
+	 * Evolves the islands, each on its own thread, until they all end.
+	 *
+	 * @return The best solution found by the islands.
+	 */
+	public Solution<F> solve() {
+
+		stopped = false;
+		List<Solution<F>> solutions = new ArrayList<Solution<F>>();
+		List<Thread> threads = new ArrayList<Thread>();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		for (AbstractGA<F> ga : islands) {
+			solutions.add(null);
+			Thread thread = new Thread(() -> {
+				/* the other islands stop unless this one ends normally short of the target */
+				boolean continueOthers = false;
+				try {
+					Solution<F> sol = ga.solve();
+					solutions.set(ga.island, sol);
+					continueOthers = !(AbstractGA.isTTTPlotExecution && AbstractGA.targetCost <= sol.cost);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					if (!continueOthers)
+						stopped = true;
+				}
+			}, "island-" + ga.island);
+			threads.add(thread);
+			thread.start();
+		}
+
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			stopped = true;
+			Thread.currentThread().interrupt();
+		}
+		Throwable e = failure.get();
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		if (e instanceof Error)
+			throw (Error) e;
+		if (e != null)
+			throw new IllegalStateException("Island failed", e);
+
+		Solution<F> bestSol = null;
+		for (Solution<F> sol : solutions) {
+			if (sol != null && (bestSol == null || sol.cost > bestSol.cost))
+				bestSol = sol;
+		}
+
+		return bestSol;
+
+	}
+
+	/**
+	 * @return Whether the islands should stop evolving.
+	 */
+	boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Migrates chromosomes at the end of a generation of an island, if it is
+	 * a migration generation: sends copies of the best chromosomes of the
+	 * island and replaces its worst chromosomes with the ones received.
+	 *
+	 * @param ga
+	 *            The search of the island.
+	 * @param generation
+	 *            The generation which ended.
+	 * @param population
+	 *            The evaluated population of the island.
+	 * @return The population, with the chromosomes received.
+	 */
+	AbstractGA<F>.Population migrate(AbstractGA<F> ga, int generation, AbstractGA<F>.Population population) {
+
+		if (islands.size() < 2 || migrants == 0 || generation % migrationInterval != 0)
+			return population;
+
+		int size = population.size();
+		List<AbstractGA<F>.Chromosome> emigrants = new ArrayList<AbstractGA<F>.Chromosome>(migrants);
+		for (int k = 0; k < migrants; k++) {
+			emigrants.add(ga.new Chromosome(population.getRanked(size - 1 - k)));
+		}
+		buffers.get(destination(ga)).set(emigrants);
+
+		List<AbstractGA<F>.Chromosome> immigrants = buffers.get(ga.island).getAndSet(null);
+		if (immigrants != null) {
+			List<AbstractGA<F>.Chromosome> worst = new ArrayList<AbstractGA<F>.Chromosome>(immigrants.size());
+			for (int k = 0; k < immigrants.size(); k++) {
+				worst.add(population.getRanked(k));
+			}
+			for (int k = 0; k < immigrants.size(); k++) {
+				population.remove(worst.get(k));
+				population.add(ga.new Chromosome(immigrants.get(k)));
+			}
+		}
+
+		return population;
+
+	}
+
+	private int destination(AbstractGA<F> ga) {
+		int count = islands.size();
+		if (topology == Topology.RING)
+			return (ga.island + 1) % count;
+		return (ga.island + 1 + ga.rng.nextInt(count - 1)) % count;
+	}
+
+}
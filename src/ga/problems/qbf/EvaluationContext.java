@@ -0,0 +1,182 @@
+package ga.problems.qbf;
+
+import java.util.Arrays;
+import ga.solutions.Solution;
+
+/**
+ * The scratch state with which a thread evaluates the solutions of a
+ * {@link QBFInstance}: the vector of variables, the {@link GainVector} bound
+ * to the last solution whose moves were evaluated, and the elements of the
+ * last solution evaluated from its selected variables. A {@link QBF} creates
+ * one context for each thread using it, so contexts are never shared.
+ */
+public class EvaluationContext {
+
+	/**
+	 * The thread using this context.
+	 */
+	final Thread owner;
+
+	/**
+	 * The coefficients of the instance.
+	 */
+	private final CoefficientMatrix Q;
+
+	/**
+	 * The array of numbers representing the domain.
+	 */
+	final double[] variables;
+
+	/**
+	 * The gains of the variables for the solution being evaluated, which are
+	 * updated incrementally as the solution changes.
+	 */
+	final GainVector gains;
+
+	/**
+	 * Scratch array holding the elements of the solution evaluated by
+	 * {@link #evaluateSelected(Solution)}.
+	 */
+	private int[] selectedIndices;
+
+	/**
+	 * The sorted elements of the last solution evaluated by
+	 * {@link #evaluateSelected(Solution)} and its value.
+	 */
+	private int[] lastIndices;
+	private int lastCount = -1;
+	private double lastValue;
+
+	/**
+	 * Scratch arrays for the elements common to the last and the new
+	 * solution, and for the ones removed and added.
+	 */
+	private final int[] commonIndices, removedIndices, addedIndices;
+
+	/**
+	 * Scratch array holding the variables set to 1 while
+	 * {@link #evaluateFlips} flips them.
+	 */
+	private final int[] flipIndices;
+
+	/**
+	 * Creates the context of the current thread for an instance.
+	 *
+	 * @param instance
+	 *            the instance whose solutions are evaluated.
+	 */
+	EvaluationContext(QBFInstance instance) {
+		owner = Thread.currentThread();
+		Q = instance.Q;
+		int size = instance.size;
+		variables = new double[size];
+		gains = new GainVector(instance);
+		selectedIndices = new int[size];
+		lastIndices = new int[size];
+		commonIndices = new int[size];
+		removedIndices = new int[size];
+		addedIndices = new int[size];
+		flipIndices = new int[size];
+	}
+
+	/**
+	 * Evaluates a QBF from the list of the k variables selected by a
+	 * solution, in O(k^2) time instead of the O(n^2) of the matrix
+	 * multiplication. The value is computed from the last solution evaluated
+	 * this way when they differ in few elements: if L and N are the previous
+	 * and the new sets of variables, C = L &cap; N, R = L \ N and A = N \ L,
+	 * then f(N) = f(L) - g(R) + g(A), where g(X) = f(X) +
+	 * \sum_{x in X, c in C}{Q_xc} costs O(|X|*(|X| + |C|)).
+	 *
+	 * @param sol
+	 *            the solution being evaluated, without repeated elements.
+	 * @return The value of the QBF.
+	 */
+	double evaluateSelected(Solution<Integer> sol) {
+
+		int k = 0;
+		for (Integer elem : sol) {
+			selectedIndices[k++] = elem;
+		}
+		Arrays.sort(selectedIndices, 0, k);
+
+		/* splits both selections into C, R and A by merging them */
+		int c = 0, r = 0, a = 0;
+		for (int p = 0, q = 0; p < lastCount || q < k;) {
+			if (q == k || (p < lastCount && lastIndices[p] < selectedIndices[q])) {
+				removedIndices[r++] = lastIndices[p++];
+			} else if (p == lastCount || selectedIndices[q] < lastIndices[p]) {
+				addedIndices[a++] = selectedIndices[q++];
+			} else {
+				commonIndices[c++] = selectedIndices[q++];
+				p++;
+			}
+		}
+
+		double value;
+		if (lastCount >= 0 && (double) (r + a) * c + 0.5 * (r * r + a * a) < 0.5 * k * (k + 1)) {
+			value = lastValue - Q.quadraticForm(removedIndices, r) + Q.quadraticForm(addedIndices, a);
+			for (int x = 0; x < r; x++) {
+				value -= Q.rowSum(removedIndices[x], commonIndices, c);
+			}
+			for (int x = 0; x < a; x++) {
+				value += Q.rowSum(addedIndices[x], commonIndices, c);
+			}
+		} else {
+			value = Q.quadraticForm(selectedIndices, k);
+		}
+
+		int[] swap = lastIndices;
+		lastIndices = selectedIndices;
+		selectedIndices = swap;
+		lastCount = k;
+
+		return lastValue = value;
+
+	}
+
+	/**
+	 * Evaluates the variation of a QBF caused by flipping, one after the
+	 * other, some variables of a solution given by its k variables set to 1.
+	 * Flipping variable i changes the value by Q_ii + \sum_{j set, j != i}
+	 * {Q_ij}, added if it is set and subtracted if it is cleared, which costs
+	 * O(k) time per flip.
+	 *
+	 * @param selected
+	 *            the variables set to 1 in the solution, in any order; the
+	 *            array is not modified.
+	 * @param k
+	 *            the number of variables set to 1.
+	 * @param flips
+	 *            the variables being flipped, in order; a variable flipped
+	 *            twice returns to its value.
+	 * @param count
+	 *            the number of flips.
+	 * @return the variation of the QBF.
+	 */
+	double evaluateFlips(int[] selected, int k, int[] flips, int count) {
+
+		System.arraycopy(selected, 0, flipIndices, 0, k);
+		Arrays.sort(flipIndices, 0, k);
+
+		double delta = 0.0;
+		for (int f = 0; f < count; f++) {
+			int i = flips[f];
+			int p = Arrays.binarySearch(flipIndices, 0, k, i);
+			double gain = Q.getDiagonal(i) + Q.rowSum(i, flipIndices, k);
+			if (p >= 0) {
+				delta -= gain;
+				System.arraycopy(flipIndices, p + 1, flipIndices, p, --k - p);
+			} else {
+				delta += gain;
+				p = -p - 1;
+				System.arraycopy(flipIndices, p, flipIndices, p + 1, k++ - p);
+				flipIndices[p] = i;
+			}
+		}
+
+		return delta;
+
+	}
+
+}
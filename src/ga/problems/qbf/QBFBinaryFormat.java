@@ -0,0 +1,381 @@
+package ga.problems.qbf;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format for QBF instances. All numbers are little-endian. A 32-byte
+ * header is followed by the coefficients:
+ *
+ * <pre>
+ *  0  int   magic number "QBFB"
+ *  4  short version (1)
+ *  6  byte  layout: 0 for a dense upper triangle, 1 for sparse triples
+ *  7  byte  value type: 1, 2 or 4 for integers of that many bytes, 8 for doubles
+ *  8  int   N, instance dimension
+ * 12  int   reserved (0)
+ * 16  long  number of coefficients stored
+ * 24  long  CRC32 checksum of the coefficients
+ * 32  the coefficients: a11 a12 ... a1N a22 ... aNN for the dense layout,
+ *     or (int i, int j, aij) for each nonzero coefficient for the sparse one
+ * </pre>
+ *
+ * The file is memory-mapped when loaded, which only saves the decoding of
+ * text: the coefficients are still copied into a {@link CoefficientMatrix}
+ * through a {@link CoefficientMatrixBuilder}, since the full rows of the dense
+ * and quantized matrices and the separate arrays of the sparse one do not
+ * match the layouts of the file.
+ * <p>
+ * The main method converts an instance from the text format described in
+ * instances/README.
+ */
+public class QBFBinaryFormat {
+
+	/**
+	 * The magic number of the format, "QBFB" read as a little-endian int.
+	 */
+	public static final int MAGIC = 0x42464251;
+
+	public static final short VERSION = 1;
+
+	public static final byte DENSE = 0;
+
+	public static final byte SPARSE = 1;
+
+	public static final int HEADER_SIZE = 32;
+
+	/**
+	 * Checks whether a file starts with the magic number of the format.
+	 *
+	 * @param filename
+	 *            Name of the file.
+	 * @return true if the file is in the binary format.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static boolean isBinary(String filename) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while (magic.hasRemaining() && channel.read(magic) >= 0)
+				;
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+
+	}
+
+	/**
+	 * Reads the checksum stored in the header of a file in the binary format,
+	 * without reading its coefficients.
+	 *
+	 * @param filename
+	 *            Name of the file.
+	 * @return the CRC32 checksum of the coefficients, or -1 if the file is
+	 *         not in the binary format.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static long storedChecksum(String filename) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) >= 0)
+				;
+			return !header.hasRemaining() && header.getInt(0) == MAGIC ? header.getLong(24) : -1L;
+		}
+
+	}
+
+	/**
+	 * Reads the matrix of coefficients of an instance in the binary format,
+	 * mapping the file into memory and copying the coefficients into a new
+	 * matrix.
+	 *
+	 * @param filename
+	 *            Name of the file.
+	 * @return The matrix of coefficients.
+	 * @throws IOException
+	 *             If the file is not a valid instance or for I/O errors.
+	 */
+	public static CoefficientMatrix read(String filename) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(filename + ": files larger than 2 GB are not supported");
+			MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			file.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC)
+				throw new IOException(filename + " is not a binary QBF instance");
+			if (file.getShort(4) != VERSION)
+				throw new IOException(filename + ": unsupported version " + file.getShort(4));
+
+			byte layout = file.get(6);
+			int valueBytes = file.get(7);
+			int size = file.getInt(8);
+			long count = file.getLong(16);
+			long checksum = file.getLong(24);
+
+			if (layout != DENSE && layout != SPARSE)
+				throw new IOException(filename + ": unknown layout " + layout);
+			if (valueBytes != 1 && valueBytes != 2 && valueBytes != 4 && valueBytes != 8)
+				throw new IOException(filename + ": unknown value type " + valueBytes);
+			if (size < 0 || (layout == DENSE && count != (long) size * (size + 1) / 2))
+				throw new IOException(filename + ": inconsistent header");
+
+			long entryBytes = layout == DENSE ? valueBytes : 8 + valueBytes;
+			if (file.limit() - HEADER_SIZE != count * entryBytes)
+				throw new IOException(filename + ": truncated file");
+
+			ByteBuffer payload = file.duplicate();
+			payload.position(HEADER_SIZE);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if (crc.getValue() != checksum)
+				throw new IOException(filename + ": checksum mismatch");
+
+			CoefficientMatrixBuilder builder = new CoefficientMatrixBuilder(size, valueBytes);
+			int p = HEADER_SIZE;
+			if (layout == DENSE) {
+				for (int i = 0; i < size; i++) {
+					for (int j = i; j < size; j++) {
+						builder.add(i, j, readValue(file, p, valueBytes));
+						p += valueBytes;
+					}
+				}
+			} else {
+				for (long k = 0; k < count; k++) {
+					int i = file.getInt(p), j = file.getInt(p + 4);
+					if (i < 0 || i >= size || j < 0 || j >= size)
+						throw new IOException(filename + ": index out of range");
+					builder.add(i, j, readValue(file, p + 8, valueBytes));
+					p += entryBytes;
+				}
+			}
+
+			return builder.build();
+		}
+
+	}
+
+	private static double readValue(ByteBuffer buffer, int position, int valueBytes) {
+		switch (valueBytes) {
+		case 1:
+			return buffer.get(position);
+		case 2:
+			return buffer.getShort(position);
+		case 4:
+			return buffer.getInt(position);
+		default:
+			return buffer.getDouble(position);
+		}
+	}
+
+	/**
+	 * Gives the smallest value type able to represent a set of coefficients
+	 * exactly.
+	 *
+	 * @param min
+	 *            the smallest coefficient.
+	 * @param max
+	 *            the largest coefficient.
+	 * @param integral
+	 *            whether all coefficients are integers.
+	 * @return the number of bytes of each value.
+	 */
+	public static int valueBytesFor(double min, double max, boolean integral) {
+		if (!integral)
+			return 8;
+		if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE)
+			return 1;
+		if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE)
+			return 2;
+		if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE)
+			return 4;
+		return 8;
+	}
+
+	/**
+	 * Writes the coefficients of an instance in the binary format as they are
+	 * produced, without keeping them in memory. The coefficients must be
+	 * given in the order of the layout (the whole upper triangle, row by row,
+	 * for the dense one); the number of coefficients and the checksum are
+	 * written to the header when the writer is closed.
+	 */
+	public static class Writer implements AutoCloseable {
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final CRC32 crc = new CRC32();
+		private final byte layout;
+		private final int valueBytes;
+		private final int size;
+		private long count;
+
+		/**
+		 * Creates the file and reserves its header.
+		 *
+		 * @param filename
+		 *            Name of the file being written.
+		 * @param size
+		 *            Dimension of the instance.
+		 * @param layout
+		 *            {@link QBFBinaryFormat#DENSE} or
+		 *            {@link QBFBinaryFormat#SPARSE}.
+		 * @param valueBytes
+		 *            Number of bytes of each value (1, 2, 4 or 8).
+		 * @throws IOException
+		 *             Necessary for I/O operations.
+		 */
+		public Writer(String filename, int size, byte layout, int valueBytes) throws IOException {
+			this.size = size;
+			this.layout = layout;
+			this.valueBytes = valueBytes;
+			file = new RandomAccessFile(filename, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+			channel.position(HEADER_SIZE);
+			buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Appends a coefficient a_ij. The indices are only stored by the
+		 * sparse layout.
+		 *
+		 * @param i
+		 *            a row index.
+		 * @param j
+		 *            a column index.
+		 * @param value
+		 *            the coefficient.
+		 * @throws IOException
+		 *             Necessary for I/O operations.
+		 */
+		public void write(int i, int j, double value) throws IOException {
+
+			if (buffer.remaining() < 16)
+				flush();
+			if (layout == SPARSE) {
+				buffer.putInt(i);
+				buffer.putInt(j);
+			}
+			switch (valueBytes) {
+			case 1:
+				buffer.put((byte) value);
+				break;
+			case 2:
+				buffer.putShort((short) value);
+				break;
+			case 4:
+				buffer.putInt((int) value);
+				break;
+			default:
+				buffer.putDouble(value);
+			}
+			count++;
+
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.duplicate());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			try {
+				flush();
+				if (layout == DENSE && count != (long) size * (size + 1) / 2)
+					throw new IOException("Dense instance with " + count + " coefficients instead of "
+							+ (long) size * (size + 1) / 2);
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putShort(VERSION).put(layout).put((byte) valueBytes).putInt(size).putInt(0)
+						.putLong(count).putLong(crc.getValue());
+				header.flip();
+				channel.position(0);
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+			} finally {
+				file.close();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Writes a matrix of coefficients in the binary format, using the sparse
+	 * layout if the matrix is stored as sparse and the smallest value type
+	 * able to represent its coefficients.
+	 *
+	 * @param Q
+	 *            The matrix of coefficients.
+	 * @param filename
+	 *            Name of the file being written.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void write(CoefficientMatrix Q, String filename) throws IOException {
+
+		int size = Q.getSize();
+		double min = 0.0, max = 0.0;
+		boolean integral = true;
+		for (int i = 0; i < size; i++) {
+			for (int j = Q.nextColumn(i, i); j < size; j = Q.nextColumn(i, j + 1)) {
+				double value = Q.get(i, j);
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+				integral &= value == Math.rint(value);
+			}
+		}
+
+		byte layout = Q instanceof SparseCoefficientMatrix ? SPARSE : DENSE;
+		try (Writer writer = new Writer(filename, size, layout, valueBytesFor(min, max, integral))) {
+			for (int i = 0; i < size; i++) {
+				for (int j = Q.nextColumn(i, i); j < size; j = Q.nextColumn(i, j + 1)) {
+					double value = Q.get(i, j);
+					if (layout == DENSE || value != 0.0)
+						writer.write(i, j, value);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Converts an instance from the text format to the binary format.
+	 *
+	 * @param args
+	 *            the name of the text instance and of the binary file being
+	 *            written.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 2) {
+			System.err.println("Usage: QBFBinaryFormat <text instance> <binary instance>");
+			System.exit(1);
+		}
+
+		write(QBFInstance.read(args[0]).Q, args[1]);
+
+	}
+
+}
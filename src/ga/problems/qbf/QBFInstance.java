@@ -0,0 +1,59 @@
+package ga.problems.qbf;
+
+import java.io.IOException;
+
+/**
+ * The data of a QBF instance: the dimension of its domain and its matrix of
+ * pre-summed coefficients. An instance holds no evaluation state, so a
+ * single copy of a large matrix can be shared by any number of {@link QBF}
+ * objects and threads, each thread evaluating solutions with its own
+ * {@link EvaluationContext}. The matrix must not be modified once the
+ * instance is shared.
+ */
+public final class QBFInstance {
+
+	/**
+	 * Dimension of the domain.
+	 */
+	public final int size;
+
+	/**
+	 * The symmetric matrix Q of pre-summed coefficients of the QBF f(x) =
+	 * x'.A.x, i.e., Q_ij = a_ij + a_ji for i != j and Q_ii = a_ii.
+	 */
+	public final CoefficientMatrix Q;
+
+	/**
+	 * Creates an instance from its matrix of coefficients.
+	 *
+	 * @param Q
+	 *            the matrix of pre-summed coefficients.
+	 */
+	public QBFInstance(CoefficientMatrix Q) {
+		this.size = Q.getSize();
+		this.Q = Q;
+	}
+
+	/**
+	 * Reads an instance from a file. Files in the {@link QBFBinaryFormat} are
+	 * memory-mapped and copied into the matrix without decoding any text, and
+	 * text files are parsed by {@link QBFTextParser}, which stores the matrix
+	 * as a sparse matrix when the density of nonzero coefficients is below
+	 * {@link CoefficientMatrixBuilder#sparseDensityThreshold}.
+	 *
+	 * @param filename
+	 *            Name of the file containing the instance.
+	 * @return the instance.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static QBFInstance read(String filename) throws IOException {
+
+		if (QBFBinaryFormat.isBinary(filename))
+			return new QBFInstance(QBFBinaryFormat.read(filename));
+
+		return new QBFInstance(QBFTextParser.read(filename));
+
+	}
+
+}
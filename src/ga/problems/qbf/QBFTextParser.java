@@ -0,0 +1,415 @@
+package ga.problems.qbf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Parser of QBF instances in the text format described in instances/README.
+ * The file is memory-mapped and its integer coefficients are decoded straight
+ * into the matrix, without any per-token allocation. When each row of the
+ * triangular matrix is on its own line, chunks of rows are parsed in
+ * parallel: a first pass counts the nonzero coefficients of each row, which
+ * decides between dense and sparse storage as in
+ * {@link CoefficientMatrixBuilder}, and a second one fills the matrix. The
+ * first pass is skipped when a sample of the rows is clearly dense. Files
+ * which do not follow this layout, or have non-integer coefficients, are read
+ * with a {@link StreamTokenizer}.
+ */
+public class QBFTextParser {
+
+	/**
+	 * Files smaller than this are parsed by a single thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+	/**
+	 * Approximate number of bytes of the rows parsed together by a task.
+	 */
+	private static final int CHUNK_SIZE = 1 << 18;
+
+	/**
+	 * Number of rows parsed to estimate the density of the matrix.
+	 */
+	private static final int SAMPLED_ROWS = 64;
+
+	/**
+	 * Signals that the file does not have the layout required by the fast
+	 * parser.
+	 */
+	@SuppressWarnings("serial")
+	private static class LayoutException extends RuntimeException {
+		LayoutException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Reads the matrix of coefficients of an instance in the text format.
+	 *
+	 * @param filename
+	 *            Name of the file.
+	 * @return The matrix of coefficients.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix read(String filename) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			if (channel.size() <= Integer.MAX_VALUE) {
+				MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				try {
+					return parse(file);
+				} catch (LayoutException e) {
+					// falls back to the tokenizer
+				}
+			}
+		}
+
+		return readTokenized(filename);
+
+	}
+
+	/**
+	 * Reads the matrix of coefficients of an instance in the text format with
+	 * a {@link StreamTokenizer}, which accepts any layout of the tokens and
+	 * real coefficients.
+	 *
+	 * @param filename
+	 *            Name of the file.
+	 * @return The matrix of coefficients.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix readTokenized(String filename) throws IOException {
+
+		try (Reader fileInst = new BufferedReader(new FileReader(filename))) {
+			StreamTokenizer stok = new StreamTokenizer(fileInst);
+
+			stok.nextToken();
+			int _size = (int) stok.nval;
+			CoefficientMatrixBuilder builder = new CoefficientMatrixBuilder(_size);
+
+			for (int i = 0; i < _size; i++) {
+				for (int j = i; j < _size; j++) {
+					stok.nextToken();
+					builder.add(i, j, stok.nval);
+				}
+			}
+
+			return builder.build();
+		}
+
+	}
+
+	private static CoefficientMatrix parse(MappedByteBuffer file) {
+
+		int limit = file.limit();
+		Chunk header = new Chunk(file, 0, Math.min(limit, 64));
+		int size = (int) header.nextInt(header.length);
+		int p = header.position;
+		if (size < 0)
+			throw new LayoutException();
+		while (p < limit && file.get(p) != '\n')
+			p++;
+
+		/* the start of each row, which must be on its own line */
+		int[] lineStart = new int[size + 1];
+		int rows = 0;
+		for (p++; p < limit && rows < size; p++) {
+			if (!isBlank(file.get(p))) {
+				lineStart[rows++] = p;
+				while (p < limit && file.get(p) != '\n')
+					p++;
+			}
+		}
+		if (rows < size)
+			throw new LayoutException();
+		lineStart[size] = limit;
+
+		/* consecutive rows are grouped into chunks of about CHUNK_SIZE bytes */
+		int[] chunkStart = new int[size + 1];
+		int chunks = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || lineStart[i] - lineStart[chunkStart[chunks - 1]] >= CHUNK_SIZE)
+				chunkStart[chunks++] = i;
+		}
+		chunkStart[chunks] = size;
+
+		boolean parallel = limit >= PARALLEL_THRESHOLD;
+		long positions = (long) size * (size + 1) / 2;
+		boolean denseAllowed = size <= CoefficientMatrixBuilder.MAX_DENSE_SIZE;
+
+		/*
+		 * the density is estimated from a sample of rows, and the nonzero
+		 * coefficients are only counted exactly when it is not clearly above
+		 * the threshold
+		 */
+		long sampledNonZeros = 0, sampledPositions = 0;
+		long minValue = 0, maxValue = 0;
+		for (int i = 0; i < size; i += Math.max(1, size / SAMPLED_ROWS)) {
+			Chunk row = new Chunk(file, lineStart[i], lineStart[i + 1]);
+			sampledNonZeros += row.parseRow(i, size, row.length, null, null, null, null, 0);
+			sampledPositions += size - i;
+			minValue = Math.min(minValue, row.min);
+			maxValue = Math.max(maxValue, row.max);
+		}
+		boolean dense = denseAllowed
+				&& sampledNonZeros > 2 * CoefficientMatrixBuilder.sparseDensityThreshold * sampledPositions;
+
+		int[] nonZeros = new int[size + 1];
+		long[] chunkMin = new long[chunks], chunkMax = new long[chunks];
+		long total = 0;
+		if (!dense) {
+			forEachChunk(chunks, parallel, c -> {
+				Chunk chunk = new Chunk(file, lineStart[chunkStart[c]], lineStart[chunkStart[c + 1]]);
+				for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+					nonZeros[i + 1] = chunk.parseRow(i, size, lineStart[i + 1] - chunk.offset, null, null, null, null,
+							0);
+				}
+				chunkMin[c] = chunk.min;
+				chunkMax[c] = chunk.max;
+			});
+			for (int i = 0; i < size; i++) {
+				total += nonZeros[i + 1];
+			}
+			minValue = Arrays.stream(chunkMin).min().orElse(0);
+			maxValue = Arrays.stream(chunkMax).max().orElse(0);
+			dense = denseAllowed && total > CoefficientMatrixBuilder.sparseDensityThreshold * positions;
+		}
+
+		if (dense) {
+			/*
+			 * large matrices are filled directly in the value type of the
+			 * coefficients counted, or of the sampled rows, and filled again
+			 * in a wider one if a coefficient of another row turns out not to
+			 * fit
+			 */
+			int valueBytes = 8L * size * size > CoefficientMatrixBuilder.quantizeMinBytes
+					? QuantizedCoefficientMatrix.valueBytesFor(minValue, maxValue)
+					: 8;
+			while (valueBytes < 8) {
+				QuantizedCoefficientMatrix matrix = new QuantizedCoefficientMatrix(size, valueBytes);
+				forEachChunk(chunks, parallel, c -> {
+					Chunk chunk = new Chunk(file, lineStart[chunkStart[c]], lineStart[chunkStart[c + 1]]);
+					for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+						chunk.parseRow(i, size, lineStart[i + 1] - chunk.offset, null, matrix, null, null, 0);
+					}
+					chunkMin[c] = chunk.min;
+					chunkMax[c] = chunk.max;
+				});
+				int needed = QuantizedCoefficientMatrix.valueBytesFor(Arrays.stream(chunkMin).min().orElse(0),
+						Arrays.stream(chunkMax).max().orElse(0));
+				if (needed <= valueBytes) {
+					matrix.mirrorUpper();
+					return matrix;
+				}
+				valueBytes = needed;
+			}
+			DenseCoefficientMatrix matrix = new DenseCoefficientMatrix(size);
+			forEachChunk(chunks, parallel, c -> {
+				Chunk chunk = new Chunk(file, lineStart[chunkStart[c]], lineStart[chunkStart[c + 1]]);
+				for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+					chunk.parseRow(i, size, lineStart[i + 1] - chunk.offset, matrix, null, null, null, 0);
+				}
+			});
+			matrix.mirrorUpper();
+			return matrix;
+		}
+
+		if (total > Integer.MAX_VALUE - 8)
+			throw new IllegalStateException("Too many nonzero coefficients");
+		for (int i = 0; i < size; i++) {
+			nonZeros[i + 1] += nonZeros[i];
+		}
+		int[] rowIndex = new int[(int) total];
+		int[] colIndex = new int[(int) total];
+		double[] values = new double[(int) total];
+		forEachChunk(chunks, parallel, c -> {
+			Chunk chunk = new Chunk(file, lineStart[chunkStart[c]], lineStart[chunkStart[c + 1]]);
+			for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+				chunk.parseRow(i, size, lineStart[i + 1] - chunk.offset, null, null, colIndex, values, nonZeros[i]);
+				Arrays.fill(rowIndex, nonZeros[i], nonZeros[i + 1], i);
+			}
+		});
+
+		return new SparseCoefficientMatrix(size, rowIndex, colIndex, values, (int) total);
+
+	}
+
+	private static void forEachChunk(int chunks, boolean parallel, IntConsumer action) {
+		IntStream range = IntStream.range(0, chunks);
+		(parallel ? range.parallel() : range).forEach(action);
+	}
+
+	/**
+	 * A range of the file, decoded in place with absolute reads of the mapped
+	 * buffer, which leave the buffer shared by the parallel tasks unchanged.
+	 */
+	private static class Chunk {
+
+		/**
+		 * Position of the chunk in the file.
+		 */
+		final int offset;
+
+		final MappedByteBuffer file;
+
+		final int length;
+
+		/**
+		 * Position of the next byte to be decoded.
+		 */
+		int position;
+
+		/**
+		 * Range of the coefficients decoded so far, including zero.
+		 */
+		long min, max;
+
+		Chunk(MappedByteBuffer file, int start, int end) {
+			this.file = file;
+			offset = start;
+			length = end - start;
+		}
+
+		private byte byteAt(int p) {
+			return file.get(offset + p);
+		}
+
+		/**
+		 * Parses row i, whose n-i coefficients a_ii ... a_in are on a single
+		 * line ending before a given position. The nonzero coefficients are
+		 * stored either in the upper triangle of one of the dense matrices,
+		 * or in the column and value arrays from a given offset; if none is
+		 * given they are only counted. Coefficients out of the range of the
+		 * quantized matrix are stored truncated, which the caller detects
+		 * from {@link #min} and {@link #max}.
+		 *
+		 * @return the number of nonzero coefficients of the row.
+		 */
+		int parseRow(int i, int size, int end, DenseCoefficientMatrix dense, QuantizedCoefficientMatrix quantized,
+				int[] colIndex, double[] values, int offset) {
+
+			int nonZeros = 0;
+
+			for (int j = i; j < size; j++) {
+				long value = nextInt(end);
+				if (value != 0) {
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+					if (dense != null) {
+						dense.addUpper(i, j, value);
+					} else if (quantized != null) {
+						quantized.addUpper(i, j, value);
+					} else if (colIndex != null) {
+						colIndex[offset + nonZeros] = j;
+						values[offset + nonZeros] = value;
+					}
+					nonZeros++;
+				}
+			}
+
+			while (position < end && isBlank(byteAt(position)))
+				position++;
+			if (position < end)
+				throw new LayoutException();
+
+			return nonZeros;
+
+		}
+
+		/**
+		 * Decodes the next signed integer before a given position.
+		 */
+		long nextInt(int end) {
+
+			int p = position;
+			while (p < end && isBlank(byteAt(p)))
+				p++;
+			if (p == end)
+				throw new LayoutException();
+
+			boolean negative = false;
+			byte c = byteAt(p);
+			if (c == '-' || c == '+') {
+				negative = c == '-';
+				p++;
+			}
+
+			int start = p;
+			long value = 0;
+			while (p < end && (c = byteAt(p)) >= '0' && c <= '9') {
+				value = 10 * value + (c - '0');
+				p++;
+			}
+			if (p == start || p - start > 18 || (p < end && !isBlank(c)))
+				throw new LayoutException();
+
+			position = p;
+			return negative ? -value : value;
+
+		}
+
+	}
+
+	private static boolean isBlank(byte c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Compares the load time of this parser with the {@link StreamTokenizer}
+	 * on the given instances. An argument of the form synthetic:N stands for a
+	 * random dense instance of dimension N, written to a temporary file.
+	 *
+	 * @param args
+	 *            the instances being loaded.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length == 0)
+			args = new String[] { "instances/qbf400", "synthetic:10000" };
+
+		for (String instance : args) {
+			String filename = instance;
+			if (instance.startsWith("synthetic:")) {
+				File file = File.createTempFile("qbf", ".txt");
+				file.deleteOnExit();
+				new QBFInstanceGenerator(Integer.parseInt(instance.substring(10)), 1.0, -10, 10, 0)
+						.writeText(file.getPath());
+				filename = file.getPath();
+			}
+
+			int repetitions = new File(filename).length() < PARALLEL_THRESHOLD ? 20 : 1;
+			double tokenized = 0, mapped = 0;
+			for (int round = 0; round < 2; round++) {
+				long start = System.nanoTime();
+				for (int k = 0; k < repetitions; k++) {
+					readTokenized(filename);
+				}
+				tokenized = (System.nanoTime() - start) / 1e6 / repetitions;
+				start = System.nanoTime();
+				for (int k = 0; k < repetitions; k++) {
+					read(filename);
+				}
+				mapped = (System.nanoTime() - start) / 1e6 / repetitions;
+			}
+			System.out.printf("%s: StreamTokenizer %.1f ms, mapped %.1f ms, speedup %.1fx%n", instance, tokenized,
+					mapped, tokenized / mapped);
+		}
+
+	}
+
+}
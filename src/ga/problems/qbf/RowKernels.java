@@ -0,0 +1,161 @@
+package ga.problems.qbf;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The loops over a row of coefficients on which the evaluation of a QBF
+ * spends its time: the dot product of a row with a 0/1 vector of variables,
+ * and the row axpy which updates the gains after a variable is flipped.
+ * This class implements them with plain loops; {@link #INSTANCE} is replaced
+ * by VectorRowKernels, which uses the incubating Vector API, when it is
+ * available. That class lives in the src-vector source folder and needs the
+ * jdk.incubator.vector module both to compile and to run:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin $(find src src-vector -name '*.java')
+ * java --add-modules jdk.incubator.vector -cp bin ...
+ * </pre>
+ *
+ * Setting the system property qbf.kernels to scalar forces the plain loops.
+ */
+public class RowKernels {
+
+	/**
+	 * The kernels used by the coefficient matrices.
+	 */
+	public static final RowKernels INSTANCE = load();
+
+	private static RowKernels load() {
+
+		if (!"scalar".equals(System.getProperty("qbf.kernels"))) {
+			try {
+				Class<?> vector = Class.forName(RowKernels.class.getPackage().getName() + ".VectorRowKernels");
+				return (RowKernels) vector.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// the Vector API is not available
+			}
+		}
+
+		return new RowKernels();
+
+	}
+
+	/**
+	 * Computes \sum_{from <= j < to}{row[offset+j]*x[j]}.
+	 *
+	 * @param row
+	 *            the array holding the row.
+	 * @param offset
+	 *            the position of the row in the array.
+	 * @param x
+	 *            the vector of variables.
+	 * @param from
+	 *            the first column, inclusive.
+	 * @param to
+	 *            the last column, exclusive.
+	 * @return the dot product.
+	 */
+	public double dot(double[] row, int offset, double[] x, int from, int to) {
+
+		double sum = 0.0;
+
+		for (int j = from; j < to; j++) {
+			sum += x[j] * row[offset + j];
+		}
+
+		return sum;
+
+	}
+
+	/**
+	 * Computes target[j] += factor*row[offset+j] for 0 <= j < length.
+	 *
+	 * @param factor
+	 *            the multiplier of the row.
+	 * @param row
+	 *            the array holding the row.
+	 * @param offset
+	 *            the position of the row in the array.
+	 * @param target
+	 *            the vector being updated.
+	 * @param length
+	 *            the number of columns.
+	 */
+	public void axpy(double factor, double[] row, int offset, double[] target, int length) {
+
+		for (int j = 0; j < length; j++) {
+			target[j] += factor * row[offset + j];
+		}
+
+	}
+
+	/**
+	 * Compares the plain loops with {@link #INSTANCE} on dense instances,
+	 * timing a dot product and an axpy on every row.
+	 *
+	 * @param args
+	 *            the instances; an argument of the form synthetic:N stands
+	 *            for a random dense matrix of dimension N.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length == 0)
+			args = new String[] { "instances/qbf200", "instances/qbf400", "synthetic:5000" };
+
+		RowKernels scalar = new RowKernels();
+		System.out.println("Kernels: " + INSTANCE.getClass().getSimpleName());
+
+		for (String instance : args) {
+			int size;
+			double[] values;
+			Random random = new Random(0);
+			if (instance.startsWith("synthetic:")) {
+				size = Integer.parseInt(instance.substring(10));
+				values = new double[size * size];
+				for (int p = 0; p < values.length; p++) {
+					values[p] = random.nextInt(21) - 10;
+				}
+			} else {
+				CoefficientMatrix Q = QBFTextParser.readTokenized(instance);
+				size = Q.getSize();
+				values = new double[size * size];
+				for (int i = 0; i < size; i++) {
+					for (int j = 0; j < size; j++) {
+						values[i * size + j] = Q.get(i, j);
+					}
+				}
+			}
+
+			double[] x = new double[size], target = new double[size];
+			for (int j = 0; j < size; j++) {
+				x[j] = random.nextInt(2);
+			}
+
+			int rows = Math.max(size, 20_000_000 / size);
+			double[] dotTime = new double[2], axpyTime = new double[2];
+			double checksum = 0.0;
+			for (int round = 0; round < 5; round++) {
+				for (int k = 0; k < 2; k++) {
+					RowKernels kernels = k == 0 ? scalar : INSTANCE;
+					long start = System.nanoTime();
+					for (int r = 0; r < rows; r++) {
+						checksum += kernels.dot(values, (r % size) * size, x, 0, size);
+					}
+					dotTime[k] = (double) (System.nanoTime() - start) / rows;
+					start = System.nanoTime();
+					for (int r = 0; r < rows; r++) {
+						kernels.axpy((r & 1) == 0 ? 1.0 : -1.0, values, (r % size) * size, target, size);
+					}
+					axpyTime[k] = (double) (System.nanoTime() - start) / rows;
+				}
+			}
+			System.out.printf("%s (checksum %.0f): dot %.0f ns -> %.0f ns, axpy %.0f ns -> %.0f ns per row%n",
+					instance, checksum + target[0], dotTime[0], dotTime[1], axpyTime[0], axpyTime[1]);
+		}
+
+	}
+
+}
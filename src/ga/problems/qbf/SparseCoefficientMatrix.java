@@ -0,0 +1,253 @@
+package ga.problems.qbf;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CoefficientMatrix} in compressed sparse row (CSR) format: the
+ * nonzero off-diagonal coefficients of row i are values[rowStart[i] ..
+ * rowStart[i+1]-1], at the columns given by the same positions of array
+ * columns, sorted in increasing order. Both Q_ij and Q_ji are stored, so
+ * every operation on a row costs O(degree) instead of O(n).
+ */
+public class SparseCoefficientMatrix extends CoefficientMatrix {
+
+	/**
+	 * The diagonal coefficients.
+	 */
+	private final double[] diagonal;
+
+	/**
+	 * The start of each row in {@link #columns} and {@link #values}; it has
+	 * size+1 positions.
+	 */
+	private final int[] rowStart;
+
+	/**
+	 * The column of each nonzero coefficient.
+	 */
+	private final int[] columns;
+
+	/**
+	 * The value of each nonzero coefficient.
+	 */
+	private final double[] values;
+
+	/**
+	 * Creates a matrix from the nonzero coefficients a_ij of a QBF, given as
+	 * triples (rows[k], cols[k], vals[k]). Coefficients repeated for the same
+	 * pair {i,j} are summed.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 * @param rows
+	 *            the row of each coefficient.
+	 * @param cols
+	 *            the column of each coefficient.
+	 * @param vals
+	 *            the value of each coefficient.
+	 * @param count
+	 *            the number of coefficients given.
+	 */
+	public SparseCoefficientMatrix(int size, int[] rows, int[] cols, double[] vals, int count) {
+
+		super(size);
+		diagonal = new double[size];
+		rowStart = new int[size + 1];
+
+		int offDiagonal = 0;
+		for (int k = 0; k < count; k++) {
+			if (rows[k] == cols[k]) {
+				diagonal[rows[k]] += vals[k];
+			} else {
+				rowStart[rows[k] + 1]++;
+				rowStart[cols[k] + 1]++;
+				offDiagonal += 2;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			rowStart[i + 1] += rowStart[i];
+		}
+
+		int[] _columns = new int[offDiagonal];
+		double[] _values = new double[offDiagonal];
+		int[] next = Arrays.copyOf(rowStart, size);
+		for (int k = 0; k < count; k++) {
+			int i = rows[k], j = cols[k];
+			if (i != j) {
+				_columns[next[i]] = j;
+				_values[next[i]++] = vals[k];
+				_columns[next[j]] = i;
+				_values[next[j]++] = vals[k];
+			}
+		}
+
+		int nonZeros = sortRows(_columns, _values);
+		columns = nonZeros == offDiagonal ? _columns : Arrays.copyOf(_columns, nonZeros);
+		values = nonZeros == offDiagonal ? _values : Arrays.copyOf(_values, nonZeros);
+
+	}
+
+	/**
+	 * Sorts the columns of each row, summing repeated columns and compacting
+	 * the arrays (and {@link #rowStart}) accordingly. Rows built from
+	 * coefficients given in row order are already sorted and are not touched.
+	 *
+	 * @return the number of coefficients kept.
+	 */
+	private int sortRows(int[] _columns, double[] _values) {
+
+		int write = 0;
+
+		for (int i = 0; i < size; i++) {
+			int start = rowStart[i], end = rowStart[i + 1];
+			boolean sorted = true;
+			for (int p = start + 1; p < end && sorted; p++) {
+				sorted = _columns[p - 1] < _columns[p];
+			}
+			if (!sorted) {
+				long[] keys = new long[end - start];
+				for (int p = start; p < end; p++) {
+					keys[p - start] = ((long) _columns[p] << 32) | (p - start);
+				}
+				Arrays.sort(keys);
+				int[] c = Arrays.copyOfRange(_columns, start, end);
+				double[] v = Arrays.copyOfRange(_values, start, end);
+				for (int p = start; p < end; p++) {
+					int k = (int) keys[p - start];
+					_columns[p] = c[k];
+					_values[p] = v[k];
+				}
+			}
+			rowStart[i] = write;
+			for (int p = start; p < end; p++) {
+				if (write > rowStart[i] && _columns[write - 1] == _columns[p]) {
+					_values[write - 1] += _values[p];
+				} else {
+					_columns[write] = _columns[p];
+					_values[write++] = _values[p];
+				}
+			}
+		}
+		rowStart[size] = write;
+
+		return write;
+
+	}
+
+	@Override
+	public double get(int i, int j) {
+
+		if (i == j)
+			return diagonal[i];
+
+		int p = Arrays.binarySearch(columns, rowStart[i], rowStart[i + 1], j);
+		return p >= 0 ? values[p] : 0.0;
+
+	}
+
+	@Override
+	public double getDiagonal(int i) {
+		return diagonal[i];
+	}
+
+	@Override
+	public int nextColumn(int i, int j) {
+
+		int p = Arrays.binarySearch(columns, rowStart[i], rowStart[i + 1], j);
+		if (p < 0)
+			p = -p - 1;
+		int next = p < rowStart[i + 1] ? columns[p] : size;
+
+		return j <= i && i < next && diagonal[i] != 0.0 ? i : next;
+
+	}
+
+	@Override
+	public void addRow(int i, double factor, double[] target) {
+
+		for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+			target[columns[p]] += factor * values[p];
+		}
+
+	}
+
+	@Override
+	public double quadraticForm(double[] x) {
+
+		double sum = 0.0;
+
+		for (int i = 0; i < size; i++) {
+			if (x[i] == 0.0)
+				continue;
+			double aux = diagonal[i] * x[i];
+			for (int p = rowStart[i + 1] - 1; p >= rowStart[i] && columns[p] > i; p--) {
+				aux += x[columns[p]] * values[p];
+			}
+			sum += aux * x[i];
+		}
+
+		return sum;
+
+	}
+
+	/**
+	 * {@inheritDoc} Each row is merged with the selected indices after it, so
+	 * the cost is O(k*(k + degree)).
+	 */
+	@Override
+	public double quadraticForm(int[] selected, int count) {
+
+		double sum = 0.0;
+
+		for (int a = 0; a < count; a++) {
+			int i = selected[a];
+			sum += diagonal[i];
+			int p = rowStart[i + 1] - 1, b = count - 1;
+			while (p >= rowStart[i] && b > a && columns[p] > i) {
+				if (columns[p] > selected[b]) {
+					p--;
+				} else if (columns[p] < selected[b]) {
+					b--;
+				} else {
+					sum += values[p--];
+					b--;
+				}
+			}
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public double rowSum(int i, int[] columns, int count) {
+
+		double sum = 0.0;
+		int p = rowStart[i], b = 0;
+
+		while (p < rowStart[i + 1] && b < count) {
+			if (this.columns[p] < columns[b]) {
+				p++;
+			} else if (this.columns[p] > columns[b]) {
+				b++;
+			} else {
+				sum += values[p++];
+				b++;
+			}
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public long getNonZeros() {
+		long nonZeros = values.length;
+		for (double value : diagonal) {
+			if (value != 0.0)
+				nonZeros++;
+		}
+		return nonZeros;
+	}
+
+}
@@ -2,6 +2,8 @@ package ga.problems.qbf.solvers;
 
 import java.io.IOException;
 import ga.metaheuristics.ga.AbstractGA;
+import ga.problems.InstrumentedEvaluator;
+import ga.problems.InstrumentedEvaluator.Operation;
 import ga.problems.qbf.QBF;
 import ga.solutions.Solution;
 
@@ -12,7 +14,25 @@ import ga.solutions.Solution;
  * 
  * @author ccavellucci, fusberti
  */
-public class GA_QBF extends AbstractGA<Integer, Integer> {
+public class GA_QBF extends AbstractGA<Integer> {
+
+	/**
+	 * the objective function, which evaluates the flips of derived fitness.
+	 */
+	private final QBF qbf;
+
+	/**
+	 * the instrumented objective function, which counts the evaluations of
+	 * flips and removals made on {@link #qbf}, or null if it is not
+	 * instrumented.
+	 */
+	private final InstrumentedEvaluator<Integer> instrumented;
+
+	/**
+	 * scratch array of each thread, holding the loci whose gene is 1 of the
+	 * chromosome being evaluated or repaired.
+	 */
+	private final ThreadLocal<int[]> selectedLoci = ThreadLocal.withInitial(() -> new int[chromosomeSize]);
 
 	/**
 	 * Constructor for the GA_QBF class. The QBF objective function is passed as
@@ -31,10 +51,53 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	 *             Necessary for I/O operations.
 	 */
 	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, String filename) throws IOException {
-		super(new QBF(filename), generations, popSize, mutationRate);
+		this(generations, popSize, mutationRate, new QBF(filename));
 		//System.out.println("Mutacao: %"+ mutationRate * 100);
 	}
 
+	/**
+	 * Constructor for the GA_QBF class over a QBF, whose instance may be
+	 * shared with other searches.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param objFunction
+	 *            The QBF objective function.
+	 */
+	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, QBF objFunction) {
+		super(objFunction, generations, popSize, mutationRate);
+		qbf = objFunction;
+		instrumented = ObjFunction instanceof InstrumentedEvaluator ? (InstrumentedEvaluator<Integer>) ObjFunction
+				: null;
+	}
+
+	/**
+	 * Constructor for the GA_QBF class over a QBF, with a given population
+	 * size and seed.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population, rounded up to an even number, or 0
+	 *            for the default size.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param objFunction
+	 *            The QBF objective function.
+	 * @param seed
+	 *            The seed of the random number generator.
+	 */
+	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, QBF objFunction, long seed) {
+		super(objFunction, generations, popSize, mutationRate, seed);
+		qbf = objFunction;
+		instrumented = ObjFunction instanceof InstrumentedEvaluator ? (InstrumentedEvaluator<Integer>) ObjFunction
+				: null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -59,10 +122,8 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	protected Solution<Integer> decode(Chromosome chromosome) {
 
 		Solution<Integer> solution = createEmptySol();
-		for (int locus = 0; locus < chromosome.size(); locus++) {
-			if (chromosome.get(locus) == 1) {
-				solution.add(new Integer(locus));
-			}
+		for (int locus = chromosome.nextSetLocus(0); locus >= 0; locus = chromosome.nextSetLocus(locus + 1)) {
+			solution.add(new Integer(locus));
 		}
 
 		ObjFunction.evaluate(solution);
@@ -79,7 +140,7 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 
 		Chromosome chromosome = new Chromosome();
 		for (int i = 0; i < chromosomeSize; i++) {
-			chromosome.add(rng.nextInt(2));
+			chromosome.set(i, rng.nextInt(2));
 		}
 
 		return chromosome;
@@ -98,6 +159,68 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The variation of the QBF is computed by {@link QBF#evaluateFlipsQBF},
+	 * flipping the loci back from the genes of the chromosome, in O(k) time
+	 * per locus for k genes set to 1.
+	 */
+	@Override
+	protected Double derivedFitness(Chromosome chromosome, double baseFitness, int[] loci, int count) {
+
+		int[] selected = selectedLoci.get();
+		int k = 0;
+		for (int locus = chromosome.nextSetLocus(0); locus >= 0; locus = chromosome.nextSetLocus(locus + 1)) {
+			selected[k++] = locus;
+		}
+
+		long start = instrumented == null ? 0L : instrumented.start();
+		double delta = qbf.evaluateFlipsQBF(selected, k, loci, count);
+		if (instrumented != null)
+			instrumented.record(Operation.FLIPS, count, start);
+
+		return baseFitness - delta;
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The two removals of each pair of adjacent genes are compared by their
+	 * deltas, computed by {@link QBF#evaluateRemovalQBF(int, int[], int)} in
+	 * O(k) time for k genes set to 1, so the chromosome is not evaluated. The
+	 * genes cleared are recorded by the chromosome, from which its fitness
+	 * is derived when it is next needed.
+	 */
+	@Override
+	protected void correct(Chromosome chromosome) {
+
+		int j = chromosome.nextAdjacentPair(0);
+		if (j < 0)
+			return;
+
+		int[] selected = selectedLoci.get();
+		int k = 0;
+		for (int locus = chromosome.nextSetLocus(0); locus >= 0; locus = chromosome.nextSetLocus(locus + 1)) {
+			selected[k++] = locus;
+		}
+
+		for (int p = 0; j >= 0; j = chromosome.nextAdjacentPair(j + 1)) {
+			long start = instrumented == null ? 0L : instrumented.start();
+			int drop = qbf.evaluateRemovalQBF(j, selected, k) > qbf.evaluateRemovalQBF(j + 1, selected, k) ? j
+					: j + 1;
+			if (instrumented != null)
+				instrumented.record(Operation.REMOVAL, 2, start);
+			chromosome.flip(drop);
+			while (selected[p] != drop) {
+				p++;
+			}
+			System.arraycopy(selected, p + 1, selected, p, --k - p);
+		}
+
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -108,7 +231,7 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	@Override
 	protected void mutateGene(Chromosome chromosome, Integer locus) {
 
-		chromosome.set(locus, 1 - chromosome.get(locus));
+		chromosome.flip(locus);
 
 	}
 
@@ -8,7 +8,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import grasp.problems.EvaluationCache;
 import grasp.problems.Evaluator;
+import grasp.problems.InstrumentedEvaluator;
 import grasp.solutions.Solution;
 
 /**
@@ -35,11 +37,24 @@ public abstract class AbstractGRASP<E> {
     
     protected static Double targetCost = 0.0;
 
+    /**
+     * the number of entries of the {@link #cache}, or 0 to disable it; it is
+     * set by the system property qbf.cache
+     */
+    public static int cacheCapacity = Integer.getInteger("qbf.cache", 1 << 16);
+
     /**
      * the objective function being optimized
      */
     protected Evaluator<E> ObjFunction;
 
+    /**
+     * the cost of the local optimum last reached from each solution built by
+     * the constructive heuristic, by fingerprint of the solution built, or
+     * null if disabled
+     */
+    protected EvaluationCache cache;
+
     /**
      * the GRASP greediness-randomness parameter
      */
@@ -85,6 +100,12 @@ public abstract class AbstractGRASP<E> {
      */
     protected ArrayList<E> RCL;
 
+    /**
+     * the cost variations of the moves evaluated at once, such as the
+     * insertion of each element of the {@link #CL}.
+     */
+    protected double[] deltas;
+
     /**
      * Creates the Candidate List, which is an ArrayList of candidate elements
      * that can enter a solution.
@@ -137,9 +158,11 @@ public abstract class AbstractGRASP<E> {
      * executed.
      */
     public AbstractGRASP(Evaluator<E> objFunction, Double alpha, Integer iterations) {
-        this.ObjFunction = objFunction;
+        this.ObjFunction = InstrumentedEvaluator.wrap(objFunction);
+        this.cache = cacheCapacity > 0 ? new EvaluationCache(cacheCapacity) : null;
         this.alpha = alpha;
         this.iterations = iterations;
+        this.deltas = new double[objFunction.getDomainSize()];
     }
 
     /**
@@ -168,8 +191,9 @@ public abstract class AbstractGRASP<E> {
 			 * Explore all candidate elements to enter the solution, saving the
 			 * highest and lowest cost variation achieved by the candidates.
              */
-            for (E c : CL) {
-                Double deltaCost = ObjFunction.evaluateInsertionCost(c, incumbentSol);
+            ObjFunction.evaluateInsertionCosts(CL, incumbentSol, deltas);
+            for (int k = 0; k < CL.size(); k++) {
+                double deltaCost = deltas[k];
                 if (deltaCost < minCost) {
                     minCost = deltaCost;
                 }
@@ -185,11 +209,11 @@ public abstract class AbstractGRASP<E> {
             Double countBias = 0.0; //Bias
             Double it = 0.0;
             
-            for (E c : CL) {
-                Double deltaCost = ObjFunction.evaluateInsertionCost(c, incumbentSol);
+            for (int k = 0; k < CL.size(); k++) {
+                double deltaCost = deltas[k];
 
                 if (deltaCost <= minCost + alpha * (maxCost - minCost)) {
-                    RCL.add(c);
+                    RCL.add(CL.get(k));
 
                     it = it + 1.0;
                     countBias += 1.0 / it;
@@ -259,24 +283,49 @@ public abstract class AbstractGRASP<E> {
             if(partialSol.cost > incumbentSol.cost)
                 partialSol = new Solution<E>(incumbentSol);
             
-            localSearch();
-            if (bestSol.cost > incumbentSol.cost) {
-                bestSol = new Solution<E>(incumbentSol);
-                if (verbose) {
-                    System.out.println("(Iter. " + i + ") BestSol = " + bestSol);
+            /*
+             * The local search is skipped for a solution already built whose
+             * local optimum did not improve on the best solution, which is
+             * then at least as good as that optimum. Otherwise it runs again:
+             * its ties are broken by the order of the elements, so it may
+             * reach another local optimum from the same elements.
+             */
+            long fingerprint = incumbentSol.getFingerprint();
+            double knownCost = cache == null ? Double.NaN : cache.get(fingerprint);
+            if (Double.isNaN(knownCost) || bestSol.cost > knownCost) {
+                localSearch();
+                if (cache != null)
+                    cache.put(fingerprint, incumbentSol.cost);
+                if (bestSol.cost > incumbentSol.cost) {
+                    bestSol = new Solution<E>(incumbentSol);
+                    if (verbose) {
+                        System.out.println("(Iter. " + i + ") BestSol = " + bestSol);
+                    }
                 }
             }
             
             if(isTTTPlotExecution && targetCost >= bestSol.cost) {
+                reportEvaluations();
                 return bestSol;
             }
         }
 
         //System.out.println("BestConstructive = " + partialSol);
                 
+        reportEvaluations();
         return bestSol;
     }
 
+    /**
+     * Prints the counters of the evaluations made by the search, if it is
+     * instrumented, and the hit rate of the {@link #cache}, if verbose.
+     */
+    private void reportEvaluations() {
+        InstrumentedEvaluator.report(ObjFunction);
+        if (verbose && cache != null)
+            System.out.println(cache);
+    }
+
     /**
      * A standard stopping criteria for the constructive heuristic is to repeat
      * until the incumbent solution improves by inserting a new candidate
@@ -0,0 +1,172 @@
+package grasp.problems;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded table mapping the 64-bit fingerprints of solutions, such as the
+ * Zobrist hashes of their elements, to their costs, used to avoid evaluating
+ * again solutions already seen. The table uses open addressing: an entry
+ * lives in one of the {@link #PROBES} slots following the position given by
+ * its fingerprint, and when all of them are taken one is evicted with the
+ * CLOCK policy, which spares the slots read since they were last passed over.
+ *
+ * The table is lock-free. Each slot stores the cost and the fingerprint
+ * xored with the cost, so a reader racing with a writer sees a slot whose
+ * two halves do not match the fingerprint it looks for, and misses instead
+ * of reading a wrong cost.
+ */
+public class EvaluationCache {
+
+	/**
+	 * Number of slots in which an entry may be stored.
+	 */
+	public static final int PROBES = 8;
+
+	/**
+	 * The fingerprint of each slot xored with its cost, and the bits of its
+	 * cost; a slot with both set to zero is empty.
+	 */
+	private final AtomicLongArray keys, values;
+
+	/**
+	 * Whether each slot was read since the eviction scan last passed over it.
+	 * Lost updates only make the eviction less accurate.
+	 */
+	private final byte[] referenced;
+
+	/**
+	 * The number of slots minus one, which is a power of two minus one.
+	 */
+	private final int mask;
+
+	/**
+	 * The number of lookups which found and did not find their fingerprint.
+	 */
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity
+	 *            the number of entries, rounded up to a power of two.
+	 */
+	public EvaluationCache(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(capacity, PROBES) - 1) << 1;
+		keys = new AtomicLongArray(slots);
+		values = new AtomicLongArray(slots);
+		referenced = new byte[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * @return the number of entries the cache can hold.
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * The fingerprint 0, which is the one of the empty solution, would be
+	 * stored as an empty slot along with a cost of 0.0.
+	 */
+	private static long remap(long fingerprint) {
+		return fingerprint == 0L ? 0x9E3779B97F4A7C15L : fingerprint;
+	}
+
+	/**
+	 * Looks up the cost of a solution.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint of the solution.
+	 * @return its cost, or NaN if it is not in the cache.
+	 */
+	public double get(long fingerprint) {
+
+		fingerprint = remap(fingerprint);
+		int base = (int) fingerprint & mask;
+
+		for (int p = 0; p < PROBES; p++) {
+			int i = (base + p) & mask;
+			long bits = values.get(i), key = keys.get(i);
+			if ((key ^ bits) == fingerprint) {
+				referenced[i] = 1;
+				hits.increment();
+				return Double.longBitsToDouble(bits);
+			}
+			if (key == 0L && bits == 0L)
+				break;
+		}
+
+		misses.increment();
+		return Double.NaN;
+
+	}
+
+	/**
+	 * Stores the cost of a solution, replacing the entry of the same
+	 * fingerprint or, if there is none, taking an empty slot or evicting an
+	 * entry.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint of the solution.
+	 * @param cost
+	 *            its cost, which must not be NaN.
+	 */
+	public void put(long fingerprint, double cost) {
+
+		fingerprint = remap(fingerprint);
+		long bits = Double.doubleToLongBits(cost);
+		int base = (int) fingerprint & mask;
+		int victim = -1;
+
+		for (int p = 0; p < PROBES; p++) {
+			int i = (base + p) & mask;
+			long b = values.get(i), key = keys.get(i);
+			if ((key == 0L && b == 0L) || (key ^ b) == fingerprint) {
+				victim = i;
+				break;
+			}
+			if (victim < 0 && referenced[i] == 0)
+				victim = i;
+			else
+				referenced[i] = 0;
+		}
+		if (victim < 0)
+			victim = base;
+
+		referenced[victim] = 0;
+		values.set(victim, bits);
+		keys.set(victim, fingerprint ^ bits);
+
+	}
+
+	/**
+	 * @return the number of lookups which found their fingerprint.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups which did not find their fingerprint.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the fraction of the lookups which found their fingerprint.
+	 */
+	public double getHitRate() {
+		long h = getHits(), total = h + getMisses();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Evaluation cache: %d hits, %d misses (%.1f%% hit rate), %d entries", getHits(),
+				getMisses(), 100.0 * getHitRate(), getCapacity());
+	}
+
+}
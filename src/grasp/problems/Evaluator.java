@@ -1,5 +1,7 @@
 package grasp.problems;
 
+import java.util.List;
+
 import grasp.solutions.Solution;
 
 /**
@@ -75,4 +77,63 @@ public interface Evaluator<E> {
 	 */
 	public abstract Double evaluateExchangeCost(E elemIn, E elemOut, Solution<E> sol);
 
+	/**
+	 * Evaluates the cost variation of inserting each element of a list into a
+	 * solution, as {@link #evaluateInsertionCost} would. Implementations may
+	 * prepare the solution once for the whole list instead of once per
+	 * element.
+	 * 
+	 * @param elems
+	 *            the elements under consideration for insertion.
+	 * @param sol
+	 *            the solution for which the insertions are being evaluated.
+	 * @param deltas
+	 *            the array which receives, at position k, the cost variation
+	 *            resulting from the insertion of elems.get(k).
+	 */
+	public default void evaluateInsertionCosts(List<E> elems, Solution<E> sol, double[] deltas) {
+		for (int k = 0; k < elems.size(); k++) {
+			deltas[k] = evaluateInsertionCost(elems.get(k), sol);
+		}
+	}
+
+	/**
+	 * Evaluates the cost variation of removing each element of a list from a
+	 * solution, as {@link #evaluateRemovalCost} would.
+	 * 
+	 * @param elems
+	 *            the elements under consideration for removal.
+	 * @param sol
+	 *            the solution for which the removals are being evaluated.
+	 * @param deltas
+	 *            the array which receives, at position k, the cost variation
+	 *            resulting from the removal of elems.get(k).
+	 */
+	public default void evaluateRemovalCosts(List<E> elems, Solution<E> sol, double[] deltas) {
+		for (int k = 0; k < elems.size(); k++) {
+			deltas[k] = evaluateRemovalCost(elems.get(k), sol);
+		}
+	}
+
+	/**
+	 * Evaluates the cost variation of exchanging an element entering a
+	 * solution with each element of a list leaving it, as
+	 * {@link #evaluateExchangeCost} would.
+	 * 
+	 * @param elemIn
+	 *            the element under consideration for insertion.
+	 * @param elemsOut
+	 *            the elements under consideration for removal.
+	 * @param sol
+	 *            the solution for which the exchanges are being evaluated.
+	 * @param deltas
+	 *            the array which receives, at position k, the cost variation
+	 *            resulting from exchanging elemIn with elemsOut.get(k).
+	 */
+	public default void evaluateExchangeCosts(E elemIn, List<E> elemsOut, Solution<E> sol, double[] deltas) {
+		for (int k = 0; k < elemsOut.size(); k++) {
+			deltas[k] = evaluateExchangeCost(elemIn, elemsOut.get(k), sol);
+		}
+	}
+
 }
@@ -0,0 +1,196 @@
+package grasp.problems.qbf;
+
+import java.util.Arrays;
+
+/**
+ * Builds a {@link CoefficientMatrix} from the coefficients a_ij of a QBF as
+ * they are read, choosing the storage automatically. The nonzero coefficients
+ * are kept as triples while their density among the n(n+1)/2 positions of the
+ * triangular matrix stays below {@link #sparseDensityThreshold}, in which case
+ * a {@link SparseCoefficientMatrix} is built; as soon as the threshold is
+ * exceeded they are moved into dense storage, so memory never exceeds that of
+ * the chosen storage by much. Large dense matrices of integer coefficients
+ * are stored directly in a {@link QuantizedCoefficientMatrix}, whose value
+ * type is given to the constructor or taken from the range of the
+ * coefficients read so far, and widened if a later coefficient does not fit;
+ * a {@link DenseCoefficientMatrix} of doubles is only allocated for real
+ * coefficients or beyond the range of int.
+ */
+public class CoefficientMatrixBuilder {
+
+	/**
+	 * The density of nonzero coefficients below which a sparse matrix is
+	 * built.
+	 */
+	public static double sparseDensityThreshold = 0.1;
+
+	/**
+	 * Size in bytes of a dense matrix of doubles above which integer
+	 * coefficients are stored as a {@link QuantizedCoefficientMatrix}.
+	 * Smaller matrices fit in the cache anyway, and converting narrow
+	 * integers to double makes their rows slower to scan.
+	 */
+	public static long quantizeMinBytes = 16L << 20;
+
+	/**
+	 * Largest dimension for which a dense matrix can be allocated.
+	 */
+	static final int MAX_DENSE_SIZE = 46340;
+
+	/**
+	 * Dimension of the matrix.
+	 */
+	private final int size;
+
+	/**
+	 * Number of nonzero coefficients above which the dense storage is used.
+	 */
+	private final long denseThreshold;
+
+	/**
+	 * The nonzero coefficients read so far, while the storage is sparse.
+	 */
+	private int[] rows, cols;
+	private double[] vals;
+	private int count;
+
+	/**
+	 * Number of bytes of the value type the coefficients are known to fit
+	 * in, or 0 if unknown.
+	 */
+	private final int valueBytes;
+
+	/**
+	 * The dense matrix, once the density threshold has been exceeded: either
+	 * the quantized or the double one is allocated.
+	 */
+	private QuantizedCoefficientMatrix quantized;
+	private DenseCoefficientMatrix dense;
+
+	/**
+	 * Constructor for the CoefficientMatrixBuilder class.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 */
+	public CoefficientMatrixBuilder(int size) {
+		this(size, 0);
+	}
+
+	/**
+	 * Creates a builder for coefficients of a known value type, such as the
+	 * one in the header of a {@link QBFBinaryFormat} file.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 * @param valueBytes
+	 *            1, 2 or 4 for integers of that many bytes, 8 for doubles, or
+	 *            0 if unknown.
+	 */
+	public CoefficientMatrixBuilder(int size, int valueBytes) {
+		this.size = size;
+		this.valueBytes = valueBytes;
+		long positions = (long) size * (size + 1) / 2;
+		denseThreshold = size > MAX_DENSE_SIZE ? Long.MAX_VALUE : (long) (sparseDensityThreshold * positions);
+		int capacity = (int) Math.min(Math.max(16, 2L * size), Integer.MAX_VALUE - 8);
+		rows = new int[capacity];
+		cols = new int[capacity];
+		vals = new double[capacity];
+	}
+
+	/**
+	 * Adds a coefficient a_ij of the QBF.
+	 *
+	 * @param i
+	 *            a row index.
+	 * @param j
+	 *            a column index.
+	 * @param value
+	 *            the coefficient.
+	 */
+	public void add(int i, int j, double value) {
+
+		if (value == 0.0)
+			return;
+
+		if (quantized != null || dense != null) {
+			addDense(i, j, value);
+			return;
+		}
+
+		if (count == rows.length) {
+			int capacity = (int) Math.min(2L * count, Integer.MAX_VALUE - 8);
+			if (capacity == count)
+				throw new IllegalStateException("Too many nonzero coefficients");
+			rows = Arrays.copyOf(rows, capacity);
+			cols = Arrays.copyOf(cols, capacity);
+			vals = Arrays.copyOf(vals, capacity);
+		}
+		rows[count] = i;
+		cols[count] = j;
+		vals[count++] = value;
+
+		if (count > denseThreshold) {
+			int width = 8L * size * size > quantizeMinBytes ? valueBytes : 8;
+			if (width == 0) {
+				long min = 0, max = 0;
+				for (int k = 0; k < count && width == 0; k++) {
+					if (vals[k] != Math.rint(vals[k]))
+						width = 8;
+					min = Math.min(min, (long) vals[k]);
+					max = Math.max(max, (long) vals[k]);
+				}
+				if (width == 0)
+					width = QuantizedCoefficientMatrix.valueBytesFor(min, max);
+			}
+			if (width < 8)
+				quantized = new QuantizedCoefficientMatrix(size, width);
+			else
+				dense = new DenseCoefficientMatrix(size);
+			for (int k = 0; k < count; k++) {
+				addDense(rows[k], cols[k], vals[k]);
+			}
+			rows = cols = null;
+			vals = null;
+		}
+
+	}
+
+	/**
+	 * Adds a coefficient to the dense storage, widening the quantized matrix
+	 * if the result does not fit in its value type.
+	 */
+	private void addDense(int i, int j, double value) {
+
+		if (quantized != null) {
+			if (quantized.add(i, j, value))
+				return;
+			double sum = quantized.get(i, j) + value;
+			int width = sum == Math.rint(sum) ? QuantizedCoefficientMatrix.valueBytesFor((long) sum, (long) sum) : 8;
+			if (width < 8) {
+				quantized = new QuantizedCoefficientMatrix(quantized, width);
+				quantized.add(i, j, value);
+				return;
+			}
+			dense = quantized.toDense();
+			quantized = null;
+		}
+		dense.add(i, j, value);
+
+	}
+
+	/**
+	 * @return the matrix with all the coefficients added.
+	 */
+	public CoefficientMatrix build() {
+
+		if (quantized != null)
+			return quantized;
+		if (dense != null)
+			return dense;
+
+		return new SparseCoefficientMatrix(size, rows, cols, vals, count);
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package grasp.problems.qbf;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of the instances loaded by the process, so that the functions
+ * created from the same file, such as the ones of the successive runs of a
+ * TTT plot, share a single {@link QBFInstance} instead of reading and storing
+ * the matrix again.
+ *
+ * An instance is registered under the canonical path of its file together
+ * with a stamp of its contents (its length, its modification time and, for
+ * the {@link QBFBinaryFormat}, the checksum stored in its header) and the
+ * settings of {@link CoefficientMatrixBuilder} deciding its storage, so a
+ * file which changed is read again. The registry keeps at most
+ * {@link #maxInstances} instances, evicting the least recently used, and
+ * holds them through soft references, which the garbage collector clears
+ * when memory runs low.
+ */
+public final class QBFInstanceRegistry {
+
+	/**
+	 * The number of instances kept, or 0 to read every file again.
+	 */
+	public static int maxInstances = Integer.getInteger("qbf.registry", 4);
+
+	private static final Map<String, SoftReference<QBFInstance>> instances = new LinkedHashMap<String, SoftReference<QBFInstance>>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SoftReference<QBFInstance>> eldest) {
+			return size() > maxInstances;
+		}
+
+	};
+
+	private QBFInstanceRegistry() {
+	}
+
+	/**
+	 * Gives the instance stored in a file, reading it with
+	 * {@link QBFInstance#read} unless it is registered.
+	 *
+	 * @param filename
+	 *            Name of the file containing the instance.
+	 * @return the instance, which may be shared with other callers.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static QBFInstance get(String filename) throws IOException {
+
+		if (maxInstances <= 0)
+			return QBFInstance.read(filename);
+
+		File file = new File(filename).getCanonicalFile();
+		String key = file.getPath() + '|' + file.length() + '|' + file.lastModified() + '|'
+				+ QBFBinaryFormat.storedChecksum(filename) + '|' + CoefficientMatrixBuilder.sparseDensityThreshold
+				+ '|' + CoefficientMatrixBuilder.quantizeMinBytes;
+
+		QBFInstance instance;
+		synchronized (instances) {
+			SoftReference<QBFInstance> reference = instances.get(key);
+			instance = reference == null ? null : reference.get();
+		}
+		if (instance != null)
+			return instance;
+
+		/* reads the file outside the lock, keeping the instance registered first */
+		instance = QBFInstance.read(filename);
+		synchronized (instances) {
+			SoftReference<QBFInstance> reference = instances.get(key);
+			QBFInstance registered = reference == null ? null : reference.get();
+			if (registered != null)
+				return registered;
+			instances.put(key, new SoftReference<QBFInstance>(instance));
+		}
+
+		return instance;
+
+	}
+
+	/**
+	 * Removes all instances from the registry.
+	 */
+	public static void clear() {
+		synchronized (instances) {
+			instances.clear();
+		}
+	}
+
+}
@@ -0,0 +1,318 @@
+package grasp.problems.qbf;
+
+/**
+ * A {@link CoefficientMatrix} with integer coefficients, stored row by row
+ * like a {@link DenseCoefficientMatrix} but in the narrowest of byte[],
+ * short[] or int[] able to hold them, which takes 8, 4 or 2 times less memory
+ * than doubles. Sums are accumulated in long, so they are exact.
+ */
+public class QuantizedCoefficientMatrix extends CoefficientMatrix {
+
+	/**
+	 * The coefficients of the matrix; only the array matching
+	 * {@link #valueBytes} is allocated.
+	 */
+	private final byte[] bytes;
+	private final short[] shorts;
+	private final int[] ints;
+
+	/**
+	 * Number of bytes of each coefficient: 1, 2 or 4.
+	 */
+	private final int valueBytes;
+
+	/**
+	 * Creates a matrix with all coefficients set to zero, to be filled with
+	 * {@link #add(int, int, double)} or {@link #addUpper(int, int, long)}.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 * @param valueBytes
+	 *            number of bytes of each coefficient: 1, 2 or 4.
+	 */
+	QuantizedCoefficientMatrix(int size, int valueBytes) {
+
+		super(size);
+		this.valueBytes = valueBytes;
+		bytes = valueBytes == 1 ? new byte[size * size] : null;
+		shorts = valueBytes == 2 ? new short[size * size] : null;
+		ints = valueBytes == 4 ? new int[size * size] : null;
+
+	}
+
+	/**
+	 * Creates a copy of a matrix, usually in a wider value type, so that
+	 * coefficients out of the range of the current one can be added.
+	 *
+	 * @param matrix
+	 *            the matrix being copied.
+	 * @param valueBytes
+	 *            number of bytes of each coefficient: 1, 2 or 4.
+	 */
+	QuantizedCoefficientMatrix(QuantizedCoefficientMatrix matrix, int valueBytes) {
+
+		this(matrix.size, valueBytes);
+		for (int p = 0; p < size * size; p++) {
+			set(p, matrix.value(p));
+		}
+
+	}
+
+	/**
+	 * Gives the narrowest value type able to hold integers in a range.
+	 *
+	 * @param min
+	 *            the smallest integer.
+	 * @param max
+	 *            the largest integer.
+	 * @return 1, 2 or 4 bytes, or 8 if the range exceeds that of int.
+	 */
+	static int valueBytesFor(long min, long max) {
+		if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE)
+			return 1;
+		if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE)
+			return 2;
+		if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE)
+			return 4;
+		return 8;
+	}
+
+	/**
+	 * Checks whether a value can be stored exactly in this matrix.
+	 */
+	boolean holds(double value) {
+		return value == Math.rint(value) && valueBytesFor((long) value, (long) value) <= valueBytes;
+	}
+
+	/**
+	 * Adds a value to the coefficient a_ij of the QBF, updating both Q_ij and
+	 * Q_ji when i != j, unless the result cannot be stored exactly.
+	 *
+	 * @return false, leaving the matrix unchanged, if the new coefficient is
+	 *         not an integer in the range of the value type.
+	 */
+	boolean add(int i, int j, double value) {
+
+		int p = i * size + j;
+		double sum = value(p) + value;
+
+		if (!holds(sum))
+			return false;
+		set(p, (long) sum);
+		if (i != j)
+			set(j * size + i, (long) sum);
+
+		return true;
+
+	}
+
+	/**
+	 * Sets Q_ij only, for i <= j, leaving Q_ji to {@link #mirrorUpper()}. The
+	 * value must be in the range of the value type.
+	 */
+	void addUpper(int i, int j, long value) {
+		set(i * size + j, value);
+	}
+
+	/**
+	 * Copies the upper triangle onto the lower one, in square blocks which fit
+	 * in the cache.
+	 */
+	void mirrorUpper() {
+
+		final int block = 64;
+
+		for (int bi = 0; bi < size; bi += block) {
+			for (int bj = bi; bj < size; bj += block) {
+				int iEnd = Math.min(bi + block, size), jEnd = Math.min(bj + block, size);
+				for (int i = bi; i < iEnd; i++) {
+					for (int j = Math.max(bj, i + 1); j < jEnd; j++) {
+						set(j * size + i, value(i * size + j));
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * @return a copy of this matrix in doubles, for coefficients which are
+	 *         not integers in the range of int.
+	 */
+	DenseCoefficientMatrix toDense() {
+
+		DenseCoefficientMatrix dense = new DenseCoefficientMatrix(size);
+
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				dense.addUpper(i, j, value(i * size + j));
+			}
+		}
+		dense.mirrorUpper();
+
+		return dense;
+
+	}
+
+	/**
+	 * @return the number of bytes of each coefficient: 1, 2 or 4.
+	 */
+	public int getValueBytes() {
+		return valueBytes;
+	}
+
+	private void set(int p, long value) {
+		switch (valueBytes) {
+		case 1:
+			bytes[p] = (byte) value;
+			break;
+		case 2:
+			shorts[p] = (short) value;
+			break;
+		default:
+			ints[p] = (int) value;
+		}
+	}
+
+	private long value(int p) {
+		switch (valueBytes) {
+		case 1:
+			return bytes[p];
+		case 2:
+			return shorts[p];
+		default:
+			return ints[p];
+		}
+	}
+
+	@Override
+	public double get(int i, int j) {
+		return value(i * size + j);
+	}
+
+	@Override
+	public double getDiagonal(int i) {
+		return value(i * size + i);
+	}
+
+	@Override
+	public int nextColumn(int i, int j) {
+		return Math.min(j, size);
+	}
+
+	@Override
+	public void addRow(int i, double factor, double[] target) {
+
+		int row = i * size;
+		double ti = target[i];
+
+		switch (valueBytes) {
+		case 1:
+			for (int j = 0; j < size; j++) {
+				target[j] += factor * bytes[row + j];
+			}
+			break;
+		case 2:
+			for (int j = 0; j < size; j++) {
+				target[j] += factor * shorts[row + j];
+			}
+			break;
+		default:
+			for (int j = 0; j < size; j++) {
+				target[j] += factor * ints[row + j];
+			}
+		}
+		target[i] = ti;
+
+	}
+
+	/**
+	 * {@inheritDoc} The sum is exact when x is a binary vector.
+	 */
+	@Override
+	public double quadraticForm(double[] x) {
+
+		for (double xi : x) {
+			if (xi != 0.0 && xi != 1.0)
+				return generalQuadraticForm(x);
+		}
+
+		long sum = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (x[i] == 0.0)
+				continue;
+			int row = i * size;
+			sum += value(row + i);
+			for (int j = i + 1; j < size; j++) {
+				if (x[j] != 0.0)
+					sum += value(row + j);
+			}
+		}
+
+		return sum;
+
+	}
+
+	private double generalQuadraticForm(double[] x) {
+
+		double sum = 0.0;
+
+		for (int i = 0; i < size; i++) {
+			if (x[i] == 0.0)
+				continue;
+			int row = i * size;
+			double aux = value(row + i) * x[i];
+			for (int j = i + 1; j < size; j++) {
+				aux += x[j] * value(row + j);
+			}
+			sum += aux * x[i];
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public double quadraticForm(int[] selected, int count) {
+
+		long sum = 0;
+
+		for (int a = 0; a < count; a++) {
+			int row = selected[a] * size;
+			sum += value(row + selected[a]);
+			for (int b = a + 1; b < count; b++) {
+				sum += value(row + selected[b]);
+			}
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public double rowSum(int i, int[] columns, int count) {
+
+		int row = i * size;
+		long sum = 0;
+
+		for (int b = 0; b < count; b++) {
+			if (columns[b] != i)
+				sum += value(row + columns[b]);
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public long getNonZeros() {
+		long nonZeros = 0;
+		for (int p = 0; p < size * size; p++) {
+			if (value(p) != 0)
+				nonZeros++;
+		}
+		return nonZeros;
+	}
+
+}
@@ -5,7 +5,10 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import grasp.metaheuristics.grasp.AbstractGRASP;
+import grasp.problems.InstrumentedEvaluator;
+import grasp.problems.InstrumentedEvaluator.Operation;
 import grasp.problems.qbf.QBF_Inverse;
+import grasp.solutions.BitSetSolution;
 import grasp.solutions.Solution;
 
 /**
@@ -18,6 +21,25 @@ import grasp.solutions.Solution;
  */
 public class GRASP_QBF extends AbstractGRASP<Integer> {
 
+    /**
+     * the objective function, whose compound insertion move is used by the
+     * local search.
+     */
+    private final QBF_Inverse qbf;
+
+    /**
+     * the instrumented objective function, which counts the evaluations of
+     * the insertions made on {@link #qbf}, or null if it is not
+     * instrumented.
+     */
+    private final InstrumentedEvaluator<Integer> instrumented;
+
+    /**
+     * all the elements of the domain, whose insertion costs are evaluated by
+     * the local search.
+     */
+    private final ArrayList<Integer> domain;
+
     /**
      * Constructor for the GRASP_QBF class. An inverse QBF objective function is
      * passed as argument for the superclass constructor.
@@ -31,7 +53,25 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
      * @throws IOException necessary for I/O operations.
      */
     public GRASP_QBF(Double alpha, Integer iterations, String filename) throws IOException {
-        super(new QBF_Inverse(filename), alpha, iterations);
+        this(alpha, iterations, new QBF_Inverse(filename));
+    }
+
+    /**
+     * Constructor for the GRASP_QBF class over an inverse QBF, whose instance
+     * may be shared with other searches.
+     *
+     * @param alpha The GRASP greediness-randomness parameter (within the range
+     * [0,1])
+     * @param iterations The number of iterations which the GRASP will be
+     * executed.
+     * @param objFunction The inverse QBF objective function.
+     */
+    public GRASP_QBF(Double alpha, Integer iterations, QBF_Inverse objFunction) {
+        super(objFunction, alpha, iterations);
+        qbf = objFunction;
+        instrumented = ObjFunction instanceof InstrumentedEvaluator ? (InstrumentedEvaluator<Integer>) ObjFunction
+                : null;
+        domain = makeCL();
     }
 
     /*
@@ -41,7 +81,7 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
      */
     @Override
     public ArrayList<Integer> makeCL() {
-        ArrayList<Integer> _CL = new ArrayList<Integer>();
+        ArrayList<Integer> _CL = new BitSetSolution(ObjFunction.getDomainSize());
         for (int i = 0; i < ObjFunction.getDomainSize(); i++) {
             Integer cand = new Integer(i);
             _CL.add(cand);
@@ -92,11 +132,12 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
      *
      * This createEmptySol instantiates an empty solution and it attributes a
      * zero cost, since it is known that a QBF solution with all variables set
-     * to zero has also zero cost.
+     * to zero has also zero cost. The solution is a {@link BitSetSolution},
+     * so the membership tests of the local search take O(1).
      */
     @Override
     public Solution<Integer> createEmptySol() {
-        Solution<Integer> sol = new Solution<Integer>();
+        Solution<Integer> sol = new BitSetSolution(ObjFunction.getDomainSize());
         sol.cost = 0.0;
         return sol;
     }
@@ -106,6 +147,8 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
      *
      * The local search operator developed for the QBF objective function is
      * composed by the neighborhood moves Insertion, Removal and 2-Exchange.
+     * An insertion also removes the neighbors of the inserted element, and is
+     * evaluated as such by {@link QBF_Inverse#evaluateInsertionEvictionQBF}.
      */
     @Override
     public Solution<Integer> localSearch() {
@@ -121,13 +164,23 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
             Random gen = new Random();
 
             // Evaluate insertions
+            if (improvement) {
+                long start = instrumented == null ? 0L : instrumented.start();
+                qbf.evaluateInsertionEvictionCosts(domain, incumbentSol, deltas);
+                if (instrumented != null)
+                    instrumented.record(Operation.INSERTION, domain.size(), start);
+            }
             for (int i = 0; i < ObjFunction.getDomainSize(); i++) {
                 double deltaCost = 0.0;
 
                 if(improvement)
-                    deltaCost = ObjFunction.evaluateInsertionCost(i, incumbentSol);
-                else
-                    deltaCost = ObjFunction.evaluateInsertionCost(gen.nextInt(ObjFunction.getDomainSize()), incumbentSol);
+                    deltaCost = deltas[i];
+                else {
+                    long start = instrumented == null ? 0L : instrumented.start();
+                    deltaCost = qbf.evaluateInsertionEvictionCost(gen.nextInt(ObjFunction.getDomainSize()), incumbentSol);
+                    if (instrumented != null)
+                        instrumented.record(Operation.INSERTION, 1, start);
+                }
                 
                 if (deltaCost < minDeltaCost) {
                     minDeltaCost = deltaCost;
@@ -140,11 +193,14 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
                 }
             }
             // Evaluate removals
-            for (Integer i : incumbentSol) {
+            if (improvement)
+                ObjFunction.evaluateRemovalCosts(incumbentSol, incumbentSol, deltas);
+            for (int k = 0; k < incumbentSol.size(); k++) {
+                Integer i = incumbentSol.get(k);
                 double deltaCost = 0.0;
 
                 if(improvement)
-                    deltaCost = ObjFunction.evaluateRemovalCost(i, incumbentSol);
+                    deltaCost = deltas[k];
                 else
                     deltaCost = ObjFunction.evaluateRemovalCost(incumbentSol.get(gen.nextInt(incumbentSol.size())), incumbentSol);
                 
@@ -168,7 +224,10 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
                 else
                     candIn = CL.get(gen.nextInt(CL.size()));
 
-                for (Integer candOut : incumbentSol) {
+                if (improvement)
+                    ObjFunction.evaluateExchangeCosts(candIn, incumbentSol, incumbentSol, deltas);
+                for (int k = 0; k < incumbentSol.size(); k++) {
+                    Integer candOut = incumbentSol.get(k);
                     if (incumbentSol.contains(candIn) || !incumbentSol.contains(candOut) || Math.abs(candIn - candOut) <= 1) {
                         continue;
                     }
@@ -176,7 +235,7 @@ public class GRASP_QBF extends AbstractGRASP<Integer> {
                     double deltaCost = 0.0;
 
                     if(improvement)
-                        deltaCost = ObjFunction.evaluateExchangeCost(candIn, candOut, incumbentSol);
+                        deltaCost = deltas[k];
                     else
                         deltaCost = ObjFunction.evaluateExchangeCost(candIn, incumbentSol.get(gen.nextInt(incumbentSol.size())), incumbentSol);
 
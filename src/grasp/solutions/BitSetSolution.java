@@ -0,0 +1,526 @@
+package grasp.solutions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A solution whose elements are the indices 0..domainSize-1 of a problem
+ * domain. Besides the list of elements, it keeps a bitset of the elements and
+ * the position of each one in the list, so that membership and appending
+ * take O(1). An element appears at most once: adding an element already
+ * present does nothing. Removals keep the order of the list, as in an
+ * {@link java.util.ArrayList}, since the searches break ties by that order;
+ * {@link #nextElement(int)} iterates the elements in increasing order. The
+ * {@link Zobrist} fingerprint of the elements is kept up to date as well.
+ * Every change goes through the methods of this class, including the ones
+ * made through list iterators and sublists, so the bitset and the positions
+ * always match the list.
+ */
+@SuppressWarnings("serial")
+public class BitSetSolution extends Solution<Integer> {
+
+	/**
+	 * The bitset of the elements in the solution.
+	 */
+	private final long[] words;
+
+	/**
+	 * The position of each element in the list, or -1 if it is not in the
+	 * solution.
+	 */
+	private final int[] position;
+
+	/**
+	 * The {@link Zobrist} fingerprint of the elements.
+	 */
+	private long fingerprint;
+
+	/**
+	 * Creates an empty solution.
+	 *
+	 * @param domainSize
+	 *            the number of elements of the problem domain.
+	 */
+	public BitSetSolution(int domainSize) {
+		super();
+		words = new long[(domainSize + 63) >>> 6];
+		position = new int[domainSize];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Creates a copy of a solution.
+	 *
+	 * @param sol
+	 *            the solution being copied.
+	 */
+	public BitSetSolution(BitSetSolution sol) {
+		super(sol);
+		words = sol.words.clone();
+		position = sol.position.clone();
+		fingerprint = sol.fingerprint;
+	}
+
+	/**
+	 * @return the number of elements of the problem domain.
+	 */
+	public int getDomainSize() {
+		return position.length;
+	}
+
+	/**
+	 * {@inheritDoc} It is kept up to date by every change, so it takes O(1)
+	 * time.
+	 */
+	@Override
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Gives the smallest element of the solution which is greater than or
+	 * equal to a given index.
+	 *
+	 * @param from
+	 *            the index to start from.
+	 * @return the next element, or -1 if there is none.
+	 */
+	public int nextElement(int from) {
+
+		if (from < 0)
+			from = 0;
+		int w = from >>> 6;
+		if (w >= words.length)
+			return -1;
+
+		long word = words[w] & (-1L << from);
+		while (word == 0) {
+			if (++w == words.length)
+				return -1;
+			word = words[w];
+		}
+
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private boolean isElement(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		int i = (Integer) o;
+		return i >= 0 && i < position.length && (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return isElement(o);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return isElement(o) ? position[(Integer) o] : -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean add(Integer e) {
+
+		if (isElement(e))
+			return false;
+		checkDomain(e);
+
+		words[e >>> 6] |= 1L << e;
+		position[e] = size();
+		fingerprint ^= Zobrist.key(e);
+		return super.add(e);
+	}
+
+	@Override
+	public void add(int index, Integer e) {
+
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		if (isElement(e))
+			return;
+		checkDomain(e);
+
+		words[e >>> 6] |= 1L << e;
+		fingerprint ^= Zobrist.key(e);
+		super.add(index, e);
+		reindex(index);
+	}
+
+	@Override
+	public Integer set(int index, Integer e) {
+
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		Integer old = get(index);
+		if (old.equals(e))
+			return old;
+		if (isElement(e))
+			throw new IllegalArgumentException("Element " + e + " is already in the solution");
+		checkDomain(e);
+
+		words[old >>> 6] &= ~(1L << old);
+		position[old] = -1;
+		words[e >>> 6] |= 1L << e;
+		position[e] = index;
+		fingerprint ^= Zobrist.key(old) ^ Zobrist.key(e);
+		return super.set(index, e);
+	}
+
+	@Override
+	public Integer remove(int index) {
+
+		Integer e = super.remove(index);
+		words[e >>> 6] &= ~(1L << e);
+		position[e] = -1;
+		fingerprint ^= Zobrist.key(e);
+		reindex(index);
+		return e;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+
+		if (!isElement(o))
+			return false;
+
+		remove(position[(Integer) o]);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0L);
+		for (Integer e : this) {
+			position[e] = -1;
+		}
+		fingerprint = 0L;
+		super.clear();
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Integer> c) {
+		boolean modified = false;
+		for (Integer e : c) {
+			modified |= add(e);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends Integer> c) {
+		int size = size();
+		for (Integer e : c) {
+			if (!isElement(e)) {
+				add(index, e);
+				index++;
+			}
+		}
+		return size() != size;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return removeIf(c::contains);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return removeIf(e -> !c.contains(e));
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Integer> filter) {
+		boolean modified = super.removeIf(e -> {
+			if (!filter.test(e))
+				return false;
+			words[e >>> 6] &= ~(1L << e);
+			position[e] = -1;
+			fingerprint ^= Zobrist.key(e);
+			return true;
+		});
+		if (modified)
+			reindex(0);
+		return modified;
+	}
+
+	@Override
+	public void sort(Comparator<? super Integer> c) {
+		super.sort(c);
+		reindex(0);
+	}
+
+	/**
+	 * {@inheritDoc} The new elements must be distinct; otherwise an
+	 * IllegalArgumentException is thrown and the solution is not changed.
+	 */
+	@Override
+	public void replaceAll(UnaryOperator<Integer> operator) {
+
+		Integer[] elements = new Integer[size()];
+		long[] replaced = new long[words.length];
+		for (int index = 0; index < elements.length; index++) {
+			Integer e = operator.apply(get(index));
+			checkDomain(e);
+			if ((replaced[e >>> 6] & (1L << e)) != 0)
+				throw new IllegalArgumentException("Element " + e + " is already in the solution");
+			replaced[e >>> 6] |= 1L << e;
+			elements[index] = e;
+		}
+
+		for (Integer e : this) {
+			position[e] = -1;
+		}
+		int[] index = { 0 };
+		super.replaceAll(e -> elements[index[0]++]);
+		System.arraycopy(replaced, 0, words, 0, words.length);
+		fingerprint = 0L;
+		for (Integer e : elements) {
+			fingerprint ^= Zobrist.key(e);
+		}
+		reindex(0);
+	}
+
+	/**
+	 * Removes the elements of a range of positions, keeping the order of
+	 * the following ones; {@link List#subList}(from, to).clear() calls it.
+	 */
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+		for (int index = fromIndex; index < toIndex; index++) {
+			Integer e = get(index);
+			words[e >>> 6] &= ~(1L << e);
+			position[e] = -1;
+			fingerprint ^= Zobrist.key(e);
+		}
+		super.removeRange(fromIndex, toIndex);
+		reindex(fromIndex);
+	}
+
+	@Override
+	public ListIterator<Integer> listIterator() {
+		return new ListItr(0);
+	}
+
+	@Override
+	public ListIterator<Integer> listIterator(int index) {
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return new ListItr(index);
+	}
+
+	/**
+	 * {@inheritDoc} The view changes the solution through its methods, and
+	 * its behavior is undefined if the solution is structurally modified
+	 * other than through the view.
+	 */
+	@Override
+	public List<Integer> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+		return new SubList(fromIndex, toIndex);
+	}
+
+	@Override
+	public Object clone() {
+		return new BitSetSolution(this);
+	}
+
+	/**
+	 * Checks that an element belongs to the domain, before the solution is
+	 * changed.
+	 */
+	private void checkDomain(Integer e) {
+		if (e < 0 || e >= position.length)
+			throw new IndexOutOfBoundsException("Element " + e + " is not in the domain");
+	}
+
+	/**
+	 * Updates the positions of the elements from a given index of the list.
+	 */
+	private void reindex(int from) {
+		for (int index = from; index < size(); index++) {
+			position[get(index)] = index;
+		}
+	}
+
+	/**
+	 * A list iterator which changes the solution through its methods.
+	 */
+	private class ListItr implements ListIterator<Integer> {
+
+		private int cursor;
+
+		private int lastReturned = -1;
+
+		private int expectedModCount = modCount;
+
+		ListItr(int index) {
+			cursor = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size();
+		}
+
+		@Override
+		public Integer next() {
+			checkForComodification();
+			if (cursor >= size())
+				throw new NoSuchElementException();
+			lastReturned = cursor;
+			return get(cursor++);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+
+		@Override
+		public Integer previous() {
+			checkForComodification();
+			if (cursor <= 0)
+				throw new NoSuchElementException();
+			lastReturned = --cursor;
+			return get(cursor);
+		}
+
+		@Override
+		public int nextIndex() {
+			return cursor;
+		}
+
+		@Override
+		public int previousIndex() {
+			return cursor - 1;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned < 0)
+				throw new IllegalStateException();
+			checkForComodification();
+			BitSetSolution.this.remove(lastReturned);
+			if (lastReturned < cursor)
+				cursor = lastReturned;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void set(Integer e) {
+			if (lastReturned < 0)
+				throw new IllegalStateException();
+			checkForComodification();
+			BitSetSolution.this.set(lastReturned, e);
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void add(Integer e) {
+			checkForComodification();
+			if (!isElement(e)) {
+				BitSetSolution.this.add(cursor++, e);
+				expectedModCount = modCount;
+			}
+			lastReturned = -1;
+		}
+
+		private void checkForComodification() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+	}
+
+	/**
+	 * A view of a range of positions, which changes the solution through its
+	 * methods.
+	 */
+	private class SubList extends AbstractList<Integer> implements RandomAccess {
+
+		private final int offset;
+
+		private int size;
+
+		SubList(int fromIndex, int toIndex) {
+			offset = fromIndex;
+			size = toIndex - fromIndex;
+		}
+
+		@Override
+		public Integer get(int index) {
+			checkIndex(index, size);
+			return BitSetSolution.this.get(offset + index);
+		}
+
+		@Override
+		public Integer set(int index, Integer e) {
+			checkIndex(index, size);
+			return BitSetSolution.this.set(offset + index, e);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void add(int index, Integer e) {
+			checkIndex(index, size + 1);
+			if (!isElement(e)) {
+				BitSetSolution.this.add(offset + index, e);
+				size++;
+				modCount++;
+			}
+		}
+
+		@Override
+		public boolean add(Integer e) {
+			int before = size;
+			add(size, e);
+			return size != before;
+		}
+
+		@Override
+		public Integer remove(int index) {
+			Integer e = get(index);
+			removeRange(index, index + 1);
+			return e;
+		}
+
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			BitSetSolution.this.removeRange(offset + fromIndex, offset + toIndex);
+			size -= toIndex - fromIndex;
+			modCount++;
+		}
+
+		private void checkIndex(int index, int length) {
+			if (index < 0 || index >= length)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+	}
+
+}
@@ -16,6 +16,32 @@ public class Solution<E> extends ArrayList<E> {
 		cost = sol.cost;
 	}
 
+	/**
+	 * Gives the number of times this solution was modified, so that an
+	 * evaluator can tell whether it changed since it was last seen.
+	 * 
+	 * @return the modification count of the solution.
+	 */
+	public int getModificationCount() {
+		return modCount;
+	}
+
+	/**
+	 * Gives the {@link Zobrist} fingerprint of the elements of the solution,
+	 * which is computed in O(size) time.
+	 * 
+	 * @return the fingerprint of the solution.
+	 */
+	public long getFingerprint() {
+		return Zobrist.fingerprint(this);
+	}
+
+	@Override
+	public E set(int index, E element) {
+		modCount++;
+		return super.set(index, element);
+	}
+
 	@Override
 	public String toString() {
 	    return cost.toString();
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import tabusearchheuristic.problems.Evaluator;
+import tabusearchheuristic.problems.InstrumentedEvaluator;
 import tabusearchheuristic.solutions.Solution;
 
 /**
@@ -78,6 +79,12 @@ public abstract class AbstractTS<E> {
 	 * the Restricted Candidate List of elements to enter the solution.
 	 */
 	protected ArrayList<E> RCL;
+
+	/**
+	 * the cost variations of the moves evaluated at once, such as the
+	 * insertion of each element of the {@link #CL}.
+	 */
+	protected double[] deltas;
 	
 	/**
 	 * the Tabu List of elements to enter the solution.
@@ -157,7 +164,9 @@ public abstract class AbstractTS<E> {
 	public abstract void setFixedComponentsIntensification();
 	
 	public void initIntensificationByRestart() {
-	    incumbentSol = new Solution<E>(bestSol);
+	    incumbentSol = createEmptySol();
+	    incumbentSol.addAll(bestSol);
+	    incumbentSol.cost = bestSol.cost;
 	    updateCL();
 	    setFixedComponentsIntensification();
 	}
@@ -174,7 +183,7 @@ public abstract class AbstractTS<E> {
 	 */
 	public AbstractTS(Evaluator<E> objFunction, Integer tenure, Integer iterations
 	        ,int numberOfIterationsToStartIntensification, int numberOfIterationsOfIntensification) {
-		this.ObjFunction = objFunction;
+		this.ObjFunction = InstrumentedEvaluator.wrap(objFunction);
 		this.tenure = tenure;
 		this.iterations = iterations;
 		this.numberOfIterationsOfIntensification = numberOfIterationsOfIntensification;
@@ -182,6 +191,7 @@ public abstract class AbstractTS<E> {
 		this.countIterationsOfIntensification = 0;
 		this.countIterationsStartIntensification = 0;
 		this.statusIntensificationProcess = STATUS.DEACTIVE;
+		this.deltas = new double[objFunction.getDomainSize()];
 	}
 
 	/**
@@ -209,8 +219,9 @@ public abstract class AbstractTS<E> {
 			 * Explore all candidate elements to enter the solution, saving the
 			 * highest and lowest cost variation achieved by the candidates.
 			 */
-			for (E c : CL) {
-				Double deltaCost = ObjFunction.evaluateInsertionCost(c, incumbentSol);
+			ObjFunction.evaluateInsertionCosts(CL, incumbentSol, deltas);
+			for (int k = 0; k < CL.size(); k++) {
+				double deltaCost = deltas[k];
 				if (deltaCost < minCost)
 					minCost = deltaCost;
 				if (deltaCost > maxCost)
@@ -221,10 +232,9 @@ public abstract class AbstractTS<E> {
 			 * Among all candidates, insert into the RCL those with the highest
 			 * performance.
 			 */
-			for (E c : CL) {
-				Double deltaCost = ObjFunction.evaluateInsertionCost(c, incumbentSol);
-				if (deltaCost <= minCost) {
-					RCL.add(c);
+			for (int k = 0; k < CL.size(); k++) {
+				if (deltas[k] <= minCost) {
+					RCL.add(CL.get(k));
 				}
 			}
 		
@@ -269,12 +279,14 @@ public abstract class AbstractTS<E> {
 			}
 			
 			if(isTTTPlotExecution && targetCost >= bestSol.cost) {
+                InstrumentedEvaluator.report(ObjFunction);
                 return bestSol;
             }
 			
 			applyIntensificationByRestart();
 		}
 
+		InstrumentedEvaluator.report(ObjFunction);
 		return bestSol;
 	}
 	
@@ -0,0 +1,306 @@
+package tabusearchheuristic.problems;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import tabusearchheuristic.solutions.Solution;
+
+/**
+ * An {@link Evaluator} which forwards every call to another evaluator,
+ * counting the calls and the moves evaluated by each kind of operation and,
+ * optionally, the time they take. The counters are {@link LongAdder}s, so the
+ * evaluator may be shared by several threads and read while a search runs.
+ * A batch call counts as one call and as many moves as the elements it
+ * evaluates. Searches which evaluate moves through methods of the problem
+ * outside the {@link Evaluator} interface count them with
+ * {@link #start()} and {@link #record}, under the operation they perform or
+ * as {@link Operation#FLIPS} for changes of several elements at once.
+ *
+ * The metaheuristics wrap their objective function with
+ * {@link #wrap(Evaluator)} and print the counters at the end of the search
+ * with {@link #report(Evaluator)}. Both are controlled by system properties:
+ * qbf.instrument, set to counts to count the calls or to timings to time them
+ * as well, and qbf.instrument.period, the interval in milliseconds at which
+ * the counters are also printed during the search.
+ *
+ * @param <E>
+ */
+public class InstrumentedEvaluator<E> implements Evaluator<E> {
+
+	/**
+	 * The kinds of operations counted separately.
+	 */
+	public enum Operation {
+		EVALUATE, INSERTION, REMOVAL, EXCHANGE, FLIPS
+	}
+
+	/**
+	 * The evaluator whose calls are counted.
+	 */
+	private final Evaluator<E> evaluator;
+
+	/**
+	 * Whether the time taken by each call is measured.
+	 */
+	private final boolean timed;
+
+	/**
+	 * The number of calls, of moves evaluated and of nanoseconds spent by
+	 * each operation.
+	 */
+	private final LongAdder[] calls, moves, nanos;
+
+	/**
+	 * The timer printing the counters periodically, if any.
+	 */
+	private Timer reporter;
+
+	/**
+	 * Creates an instrumented evaluator.
+	 *
+	 * @param evaluator
+	 *            the evaluator whose calls are counted.
+	 * @param timed
+	 *            whether the time taken by each call is measured.
+	 */
+	public InstrumentedEvaluator(Evaluator<E> evaluator, boolean timed) {
+		this.evaluator = evaluator;
+		this.timed = timed;
+		int operations = Operation.values().length;
+		calls = new LongAdder[operations];
+		moves = new LongAdder[operations];
+		nanos = new LongAdder[operations];
+		for (int k = 0; k < operations; k++) {
+			calls[k] = new LongAdder();
+			moves[k] = new LongAdder();
+			nanos[k] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Wraps an evaluator as asked by the system property qbf.instrument.
+	 *
+	 * @param evaluator
+	 *            the evaluator being wrapped.
+	 * @return an instrumented evaluator, or the evaluator itself if the
+	 *         property is not set.
+	 */
+	public static <E> Evaluator<E> wrap(Evaluator<E> evaluator) {
+
+		String mode = System.getProperty("qbf.instrument");
+		if (mode == null || evaluator instanceof InstrumentedEvaluator)
+			return evaluator;
+
+		InstrumentedEvaluator<E> instrumented = new InstrumentedEvaluator<E>(evaluator, "timings".equals(mode));
+		long period = Long.getLong("qbf.instrument.period", 0L);
+		if (period > 0)
+			instrumented.startReporting(period, System.out);
+
+		return instrumented;
+
+	}
+
+	/**
+	 * Prints the counters of an evaluator, if it is instrumented, and stops
+	 * printing them periodically.
+	 *
+	 * @param evaluator
+	 *            the evaluator of a search which ended.
+	 */
+	public static void report(Evaluator<?> evaluator) {
+
+		if (evaluator instanceof InstrumentedEvaluator) {
+			InstrumentedEvaluator<?> instrumented = (InstrumentedEvaluator<?>) evaluator;
+			instrumented.stopReporting();
+			System.out.println(instrumented);
+		}
+
+	}
+
+	/**
+	 * @return the evaluator whose calls are counted.
+	 */
+	public Evaluator<E> getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * @param operation
+	 *            a kind of operation.
+	 * @return the number of calls made so far.
+	 */
+	public long getCalls(Operation operation) {
+		return calls[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation
+	 *            a kind of operation.
+	 * @return the number of moves, or solutions, evaluated so far.
+	 */
+	public long getMoves(Operation operation) {
+		return moves[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation
+	 *            a kind of operation.
+	 * @return the time spent so far, in nanoseconds, or 0 if calls are not
+	 *         timed.
+	 */
+	public long getNanos(Operation operation) {
+		return nanos[operation.ordinal()].sum();
+	}
+
+	/**
+	 * Sets all counters to zero.
+	 */
+	public void reset() {
+		for (int k = 0; k < calls.length; k++) {
+			calls[k].reset();
+			moves[k].reset();
+			nanos[k].reset();
+		}
+	}
+
+	/**
+	 * Starts printing the counters periodically from a daemon thread.
+	 *
+	 * @param periodMillis
+	 *            the interval between two reports, in milliseconds.
+	 * @param out
+	 *            the stream the counters are printed to.
+	 */
+	public synchronized void startReporting(long periodMillis, PrintStream out) {
+
+		stopReporting();
+		reporter = new Timer("evaluator-report", true);
+		reporter.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				out.println(InstrumentedEvaluator.this);
+			}
+		}, periodMillis, periodMillis);
+
+	}
+
+	/**
+	 * Stops printing the counters periodically.
+	 */
+	public synchronized void stopReporting() {
+
+		if (reporter != null) {
+			reporter.cancel();
+			reporter = null;
+		}
+
+	}
+
+	/**
+	 * @return the start time of a call, to be given to {@link #record}.
+	 */
+	public long start() {
+		return timed ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Counts a call.
+	 *
+	 * @param operation
+	 *            the kind of operation of the call.
+	 * @param count
+	 *            the number of moves evaluated by the call.
+	 * @param start
+	 *            the start time of the call, given by {@link #start()}.
+	 */
+	public void record(Operation operation, long count, long start) {
+		int k = operation.ordinal();
+		calls[k].increment();
+		moves[k].add(count);
+		if (timed)
+			nanos[k].add(System.nanoTime() - start);
+	}
+
+	@Override
+	public Integer getDomainSize() {
+		return evaluator.getDomainSize();
+	}
+
+	@Override
+	public Double evaluate(Solution<E> sol) {
+		long start = start();
+		Double cost = evaluator.evaluate(sol);
+		record(Operation.EVALUATE, 1, start);
+		return cost;
+	}
+
+	@Override
+	public Double evaluateInsertionCost(E elem, Solution<E> sol) {
+		long start = start();
+		Double delta = evaluator.evaluateInsertionCost(elem, sol);
+		record(Operation.INSERTION, 1, start);
+		return delta;
+	}
+
+	@Override
+	public Double evaluateRemovalCost(E elem, Solution<E> sol) {
+		long start = start();
+		Double delta = evaluator.evaluateRemovalCost(elem, sol);
+		record(Operation.REMOVAL, 1, start);
+		return delta;
+	}
+
+	@Override
+	public Double evaluateExchangeCost(E elemIn, E elemOut, Solution<E> sol) {
+		long start = start();
+		Double delta = evaluator.evaluateExchangeCost(elemIn, elemOut, sol);
+		record(Operation.EXCHANGE, 1, start);
+		return delta;
+	}
+
+	@Override
+	public void evaluateInsertionCosts(List<E> elems, Solution<E> sol, double[] deltas) {
+		long start = start();
+		evaluator.evaluateInsertionCosts(elems, sol, deltas);
+		record(Operation.INSERTION, elems.size(), start);
+	}
+
+	@Override
+	public void evaluateRemovalCosts(List<E> elems, Solution<E> sol, double[] deltas) {
+		long start = start();
+		evaluator.evaluateRemovalCosts(elems, sol, deltas);
+		record(Operation.REMOVAL, elems.size(), start);
+	}
+
+	@Override
+	public void evaluateExchangeCosts(E elemIn, List<E> elemsOut, Solution<E> sol, double[] deltas) {
+		long start = start();
+		evaluator.evaluateExchangeCosts(elemIn, elemsOut, sol, deltas);
+		record(Operation.EXCHANGE, elemsOut.size(), start);
+	}
+
+	/**
+	 * @return one line per operation with its calls, moves and, if calls are
+	 *         timed, the time spent.
+	 */
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder("Evaluator calls:");
+		for (Operation operation : Operation.values()) {
+			long c = getCalls(operation), m = getMoves(operation);
+			sb.append(String.format("%n  %-9s %12d calls %14d moves", operation.name().toLowerCase(), c, m));
+			if (timed) {
+				long n = getNanos(operation);
+				sb.append(String.format(" %12.1f ms %8.1f ns/move", n / 1e6, m == 0 ? 0.0 : (double) n / m));
+			}
+		}
+
+		return sb.toString();
+
+	}
+
+}
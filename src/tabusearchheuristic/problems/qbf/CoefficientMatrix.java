@@ -0,0 +1,116 @@
+package tabusearchheuristic.problems.qbf;
+
+/**
+ * The symmetric matrix Q of pre-summed coefficients of a QBF f(x) = x'.A.x,
+ * i.e., Q_ij = a_ij + a_ji for i != j and Q_ii = a_ii, so that f(x) =
+ * \sum_i{Q_ii*x_i} + \sum_{i<j}{Q_ij*x_i*x_j}. Implementations decide how the
+ * coefficients are stored; the operations below are the ones needed by the
+ * evaluators, each one costing at most a scan over a single row.
+ */
+public abstract class CoefficientMatrix {
+
+	/**
+	 * Dimension of the matrix.
+	 */
+	protected final int size;
+
+	/**
+	 * Constructor for the CoefficientMatrix class.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 */
+	protected CoefficientMatrix(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return the dimension of the matrix.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 *            a row index.
+	 * @param j
+	 *            a column index.
+	 * @return the coefficient Q_ij.
+	 */
+	public abstract double get(int i, int j);
+
+	/**
+	 * @param i
+	 *            a row index.
+	 * @return the diagonal coefficient Q_ii.
+	 */
+	public abstract double getDiagonal(int i);
+
+	/**
+	 * Gives the first column j' >= j of row i whose coefficient may be
+	 * nonzero, so that a row can be iterated without visiting every column
+	 * of a sparse matrix.
+	 *
+	 * @param i
+	 *            a row index.
+	 * @param j
+	 *            the column to start from.
+	 * @return the next column, or size if there is none.
+	 */
+	public abstract int nextColumn(int i, int j);
+
+	/**
+	 * Adds a multiple of row i, without its diagonal coefficient, to a
+	 * vector: target_j += factor*Q_ij for every j != i.
+	 *
+	 * @param i
+	 *            the row being added.
+	 * @param factor
+	 *            the multiplier of the row.
+	 * @param target
+	 *            the vector being updated.
+	 */
+	public abstract void addRow(int i, double factor, double[] target);
+
+	/**
+	 * Computes the quadratic form x'.A.x for a vector x.
+	 *
+	 * @param x
+	 *            the vector of variables.
+	 * @return the value of the quadratic form.
+	 */
+	public abstract double quadraticForm(double[] x);
+
+	/**
+	 * Computes the quadratic form x'.A.x for the binary vector x whose
+	 * variables set to 1 are given, in O(k^2) time for k variables.
+	 *
+	 * @param selected
+	 *            the indices of the variables set to 1, in increasing order.
+	 * @param count
+	 *            the number of indices given.
+	 * @return the value of the quadratic form.
+	 */
+	public abstract double quadraticForm(int[] selected, int count);
+
+	/**
+	 * Computes \sum_j{Q_ij} over the given columns j != i.
+	 *
+	 * @param i
+	 *            a row index.
+	 * @param columns
+	 *            the columns, in increasing order.
+	 * @param count
+	 *            the number of columns given.
+	 * @return the sum of the coefficients.
+	 */
+	public abstract double rowSum(int i, int[] columns, int count);
+
+	/**
+	 * @return the number of nonzero coefficients stored, counting Q_ij and
+	 *         Q_ji separately.
+	 */
+	public abstract long getNonZeros();
+
+}
@@ -0,0 +1,190 @@
+package tabusearchheuristic.problems.qbf;
+
+/**
+ * A {@link CoefficientMatrix} which stores every coefficient, row by row, in
+ * a flat array (Q_ij is at position i*size+j).
+ */
+public class DenseCoefficientMatrix extends CoefficientMatrix {
+
+	/**
+	 * The coefficients of the matrix.
+	 */
+	private final double[] values;
+
+	/**
+	 * Creates a matrix with all coefficients set to zero.
+	 *
+	 * @param size
+	 *            dimension of the matrix.
+	 */
+	public DenseCoefficientMatrix(int size) {
+		super(size);
+		values = new double[size * size];
+	}
+
+	/**
+	 * Adds a value to the coefficient a_ij of the QBF, updating both Q_ij and
+	 * Q_ji when i != j.
+	 *
+	 * @param i
+	 *            a row index.
+	 * @param j
+	 *            a column index.
+	 * @param value
+	 *            the value being added.
+	 */
+	public void add(int i, int j, double value) {
+		values[i * size + j] += value;
+		if (i != j)
+			values[j * size + i] += value;
+	}
+
+	/**
+	 * Adds a value to Q_ij only, for i <= j, leaving Q_ji to
+	 * {@link #mirrorUpper()}. Filling the upper triangle row by row this way
+	 * avoids writing down the columns of the lower one.
+	 */
+	void addUpper(int i, int j, double value) {
+		values[i * size + j] += value;
+	}
+
+	/**
+	 * Copies the upper triangle onto the lower one, in square blocks which fit
+	 * in the cache.
+	 */
+	void mirrorUpper() {
+
+		final int block = 64;
+
+		for (int bi = 0; bi < size; bi += block) {
+			for (int bj = bi; bj < size; bj += block) {
+				int iEnd = Math.min(bi + block, size), jEnd = Math.min(bj + block, size);
+				for (int i = bi; i < iEnd; i++) {
+					for (int j = Math.max(bj, i + 1); j < jEnd; j++) {
+						values[j * size + i] = values[i * size + j];
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Gives the matrix in the most compact dense storage able to hold its
+	 * coefficients exactly.
+	 *
+	 * @return a {@link QuantizedCoefficientMatrix} if every coefficient is an
+	 *         integer in the range of int, or this matrix otherwise.
+	 */
+	public CoefficientMatrix quantize() {
+
+		double min = 0.0, max = 0.0;
+
+		for (double value : values) {
+			if (value != Math.rint(value))
+				return this;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE)
+			return this;
+
+		QuantizedCoefficientMatrix matrix = new QuantizedCoefficientMatrix(size,
+				QuantizedCoefficientMatrix.valueBytesFor((long) min, (long) max));
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				matrix.addUpper(i, j, (long) values[i * size + j]);
+			}
+		}
+		matrix.mirrorUpper();
+
+		return matrix;
+
+	}
+
+	@Override
+	public double get(int i, int j) {
+		return values[i * size + j];
+	}
+
+	@Override
+	public double getDiagonal(int i) {
+		return values[i * size + i];
+	}
+
+	@Override
+	public int nextColumn(int i, int j) {
+		return Math.min(j, size);
+	}
+
+	@Override
+	public void addRow(int i, double factor, double[] target) {
+
+		double ti = target[i];
+
+		RowKernels.INSTANCE.axpy(factor, values, i * size, target, size);
+		target[i] = ti;
+
+	}
+
+	@Override
+	public double quadraticForm(double[] x) {
+
+		double sum = 0.0;
+
+		for (int i = 0; i < size; i++) {
+			if (x[i] == 0.0)
+				continue;
+			int row = i * size;
+			double aux = values[row + i] * x[i] + RowKernels.INSTANCE.dot(values, row, x, i + 1, size);
+			sum += aux * x[i];
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public double quadraticForm(int[] selected, int count) {
+
+		double sum = 0.0;
+
+		for (int a = 0; a < count; a++) {
+			int row = selected[a] * size;
+			double aux = values[row + selected[a]];
+			for (int b = a + 1; b < count; b++) {
+				aux += values[row + selected[b]];
+			}
+			sum += aux;
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public double rowSum(int i, int[] columns, int count) {
+
+		int row = i * size;
+		double sum = 0.0;
+
+		for (int b = 0; b < count; b++) {
+			if (columns[b] != i)
+				sum += values[row + columns[b]];
+		}
+
+		return sum;
+
+	}
+
+	@Override
+	public long getNonZeros() {
+		long nonZeros = 0;
+		for (double value : values) {
+			if (value != 0.0)
+				nonZeros++;
+		}
+		return nonZeros;
+	}
+
+}
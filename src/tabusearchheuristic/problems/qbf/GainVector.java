@@ -0,0 +1,259 @@
+package tabusearchheuristic.problems.qbf;
+
+import tabusearchheuristic.solutions.Solution;
+
+/**
+ * Incremental evaluation state of a {@link QBF} bound to a solution. For each
+ * variable i it keeps the gain g_i = Q_ii + \sum_{j != i}{Q_ij*x_j}, which is
+ * the variation of f(x) when x_i is set to 1 (or its opposite when x_i is set
+ * to 0). Flipping a single variable updates the gains and the value of the
+ * function in O(n), or O(degree) with a sparse {@link CoefficientMatrix},
+ * after which the insertion and removal deltas are read in O(1) and the
+ * exchange delta is g_in - g_out - Q_in,out.
+ */
+public class GainVector {
+
+	/**
+	 * The coefficients used to update the gains.
+	 */
+	private final CoefficientMatrix Q;
+
+	/**
+	 * Whether each variable is currently set to 1.
+	 */
+	private final boolean[] selected;
+
+	/**
+	 * Dense list of the variables currently set to 1.
+	 */
+	private final int[] members;
+
+	/**
+	 * Position of each variable in {@link #members}, or -1 if it is set to 0.
+	 */
+	private final int[] position;
+
+	/**
+	 * Number of variables currently set to 1.
+	 */
+	private int count;
+
+	/**
+	 * The gain g_i of every variable.
+	 */
+	private final double[] gain;
+
+	/**
+	 * The value of the function for the current variables.
+	 */
+	private double cost;
+
+	/**
+	 * Scratch marks used while binding a new solution.
+	 */
+	private final boolean[] mark;
+
+	/**
+	 * The solution the current state mirrors, and its modification count at
+	 * the time it was bound.
+	 */
+	private Solution<Integer> bound;
+	private int boundModCount;
+
+	/**
+	 * Creates the gain vector of the all-zeros solution of a QBF.
+	 *
+	 * @param instance
+	 *            the instance whose coefficients are used.
+	 */
+	public GainVector(QBFInstance instance) {
+		this.Q = instance.Q;
+		int size = instance.size;
+		selected = new boolean[size];
+		members = new int[size];
+		position = new int[size];
+		gain = new double[size];
+		mark = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			position[i] = -1;
+			gain[i] = Q.getDiagonal(i);
+		}
+		cost = 0.0;
+	}
+
+	/**
+	 * Makes the state mirror a solution. Nothing is done if the solution is
+	 * the one already bound and it was not modified since; otherwise only the
+	 * variables that differ from the current state are flipped.
+	 *
+	 * @param sol
+	 *            the solution being bound.
+	 */
+	public void bind(Solution<Integer> sol) {
+
+		if (sol == bound && sol.getModificationCount() == boundModCount)
+			return;
+
+		for (Integer elem : sol) {
+			mark[elem] = true;
+		}
+		for (int p = count - 1; p >= 0; p--) {
+			if (!mark[members[p]])
+				flip(members[p]);
+		}
+		for (Integer elem : sol) {
+			if (!selected[elem])
+				flip(elem);
+			mark[elem] = false;
+		}
+
+		bound = sol;
+		boundModCount = sol.getModificationCount();
+
+	}
+
+	/**
+	 * @param sol
+	 *            a solution.
+	 * @return whether the solution is the one last bound, even if it was
+	 *         modified since.
+	 */
+	public boolean isBound(Solution<Integer> sol) {
+		return sol == bound;
+	}
+
+	/**
+	 * Flips a variable, updating the value of the function and the gains of
+	 * all variables with a single row of the coefficient matrix.
+	 *
+	 * @param i
+	 *            index of the variable being flipped.
+	 */
+	public void flip(int i) {
+
+		double s;
+
+		if (selected[i]) {
+			cost -= gain[i];
+			s = -1.0;
+			int p = position[i];
+			int last = members[--count];
+			members[p] = last;
+			position[last] = p;
+			position[i] = -1;
+		} else {
+			cost += gain[i];
+			s = 1.0;
+			members[count] = i;
+			position[i] = count++;
+		}
+		selected[i] = !selected[i];
+
+		Q.addRow(i, s, gain);
+
+		bound = null;
+
+	}
+
+	/**
+	 * @return the value of the function for the current variables.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * @param i
+	 *            index of a variable.
+	 * @return the gain g_i of the variable.
+	 */
+	public double getGain(int i) {
+		return gain[i];
+	}
+
+	/**
+	 * @param i
+	 *            index of a variable.
+	 * @return true if the variable is currently set to 1.
+	 */
+	public boolean isSelected(int i) {
+		return selected[i];
+	}
+
+	/**
+	 * @return the number of variables currently set to 1.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param i
+	 *            index of the variable being inserted.
+	 * @return the variation of the function resulting from the insertion.
+	 */
+	public double insertionDelta(int i) {
+		return selected[i] ? 0.0 : gain[i];
+	}
+
+	/**
+	 * @param i
+	 *            index of the variable being inserted.
+	 * @return the variation of the function resulting from the insertion of
+	 *         the variable together with the removal of its neighbors i-1 and
+	 *         i+1, so that no two consecutive variables are set: g_i - g_l -
+	 *         g_r - Q_il - Q_ir + Q_lr over the neighbors l and r which are
+	 *         set.
+	 */
+	public double insertionEvictionDelta(int i) {
+
+		if (selected[i])
+			return 0.0;
+
+		boolean left = i - 1 >= 0 && selected[i - 1];
+		boolean right = i + 1 < selected.length && selected[i + 1];
+		double sum = gain[i];
+
+		if (left) {
+			sum -= gain[i - 1] + Q.get(i, i - 1);
+		}
+		if (right) {
+			sum -= gain[i + 1] + Q.get(i, i + 1);
+			if (left)
+				sum += Q.get(i + 1, i - 1);
+		}
+
+		return sum;
+
+	}
+
+	/**
+	 * @param i
+	 *            index of the variable being removed.
+	 * @return the variation of the function resulting from the removal.
+	 */
+	public double removalDelta(int i) {
+		return selected[i] ? -gain[i] : 0.0;
+	}
+
+	/**
+	 * @param in
+	 *            index of the variable entering the solution.
+	 * @param out
+	 *            index of the variable leaving the solution.
+	 * @return the variation of the function resulting from the exchange.
+	 */
+	public double exchangeDelta(int in, int out) {
+
+		if (in == out)
+			return 0.0;
+		if (selected[in])
+			return removalDelta(out);
+		if (!selected[out])
+			return insertionDelta(in);
+
+		return gain[in] - gain[out] - Q.get(in, out);
+
+	}
+
+}
@@ -1,11 +1,8 @@
 package tabusearchheuristic.problems.qbf;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.util.Arrays;
+import java.util.List;
 import tabusearchheuristic.problems.Evaluator;
 import tabusearchheuristic.solutions.Solution;
 
@@ -20,30 +17,50 @@ import tabusearchheuristic.solutions.Solution;
  * problem: a survey. J Comb Optim (2014) 28:58–81. DOI
  * 10.1007/s10878-014-9734-0.
  * 
+ * The coefficients are kept in a {@link QBFInstance}, and everything an
+ * evaluation modifies in an {@link EvaluationContext} of the calling thread,
+ * so a QBF can be used by several threads at once.
+ * 
  * @author ccavellucci, fusberti
  *
  */
 public class QBF implements Evaluator<Integer> {
 
+	/**
+	 * The instance whose solutions are evaluated, which is shared by every
+	 * thread.
+	 */
+	public final QBFInstance instance;
+
 	/**
 	 * Dimension of the domain.
 	 */
 	public final Integer size;
 
 	/**
-	 * The array of numbers representing the domain.
+	 * The symmetric matrix Q of pre-summed coefficients of the QBF f(x) =
+	 * x'.A.x, i.e., Q_ij = a_ij + a_ji for i != j and Q_ii = a_ii. Its storage
+	 * is dense or sparse depending on the density of the instance.
 	 */
-	public final Double[] variables;
+	public final CoefficientMatrix Q;
 
 	/**
-	 * The matrix A of coefficients for the QBF f(x) = x'.A.x
+	 * The evaluation state of each thread using this function.
 	 */
-	public Double[][] A;
+	private final ThreadLocal<EvaluationContext> contexts;
+
+	/**
+	 * The context last returned by {@link #context()}, which spares the
+	 * lookup in {@link #contexts} while a single thread evaluates.
+	 */
+	private EvaluationContext lastContext;
 
 	/**
 	 * The constructor for QuadracticBinaryFunction class. The filename of the
 	 * input for setting matrix of coefficients A of the QBF. The dimension of
-	 * the array of variables x is returned from the {@link #readInput} method.
+	 * the array of variables x is returned from the {@link QBFInstance#read}
+	 * method. The instance is taken from the {@link QBFInstanceRegistry}, so
+	 * functions created from the same file share it.
 	 * 
 	 * @param filename
 	 *            Name of the file containing the input for setting the QBF.
@@ -51,8 +68,47 @@ public class QBF implements Evaluator<Integer> {
 	 *             Necessary for I/O operations.
 	 */
 	public QBF(String filename) throws IOException {
-		size = readInput(filename);
-		variables = allocateVariables();
+		this(QBFInstanceRegistry.get(filename));
+	}
+
+	/**
+	 * Creates a QBF over an instance which may be shared with other
+	 * functions and threads.
+	 * 
+	 * @param instance
+	 *            the instance whose solutions are evaluated.
+	 */
+	public QBF(QBFInstance instance) {
+		this.instance = instance;
+		size = instance.size;
+		Q = instance.Q;
+		contexts = ThreadLocal.withInitial(() -> new EvaluationContext(instance));
+	}
+
+	/**
+	 * Gives the evaluation state of the current thread, creating it on first
+	 * use.
+	 * 
+	 * @return the context of the current thread.
+	 */
+	protected EvaluationContext context() {
+
+		EvaluationContext context = lastContext;
+		if (context == null || context.owner != Thread.currentThread()) {
+			context = contexts.get();
+			lastContext = context;
+		}
+
+		return context;
+
+	}
+
+	/**
+	 * @return the array of numbers representing the domain for the current
+	 *         thread, which is evaluated by {@link #evaluateQBF()}.
+	 */
+	public double[] getVariables() {
+		return context().variables;
 	}
 
 	/**
@@ -65,6 +121,7 @@ public class QBF implements Evaluator<Integer> {
 	public void setVariables(Solution<Integer> sol) {
 
 		resetVariables();
+		double[] variables = getVariables();
 		if (!sol.isEmpty()) {
 			for (Integer elem : sol) {
 				variables[elem] = 1.0;
@@ -84,19 +141,53 @@ public class QBF implements Evaluator<Integer> {
 	}
 
 	/**
-	 * {@inheritDoc} In the case of a QBF, the evaluation correspond to
-	 * computing a matrix multiplication x'.A.x. A better way to evaluate this
-	 * function when at most two variables are modified is given by methods
-	 * {@link #evaluateInsertionQBF(int)}, {@link #evaluateRemovalQBF(int)} and
-	 * {@link #evaluateExchangeQBF(int,int)}.
+	 * {@inheritDoc} In the case of a QBF, the solution last bound to the
+	 * {@link GainVector} of the current thread is evaluated by flipping the
+	 * variables that changed since instead of computing the matrix
+	 * multiplication x'.A.x.
+	 * The variation caused by modifying at most two variables is then given
+	 * by methods {@link #evaluateInsertionQBF(int)},
+	 * {@link #evaluateRemovalQBF(int)} and {@link #evaluateExchangeQBF(int,int)}.
+	 * Other solutions, such as the ones decoded by the GA, are only bound if
+	 * their insertion, removal or exchange costs are asked for; they are
+	 * evaluated by {@link #evaluateSelectedQBF(Solution)} instead.
 	 * 
 	 * @return The evaluation of the QBF.
 	 */
 	@Override
 	public Double evaluate(Solution<Integer> sol) {
 
-		setVariables(sol);
-		return sol.cost = evaluateQBF();
+		GainVector gains = context().gains;
+		if (!gains.isBound(sol))
+			return sol.cost = evaluateSelectedQBF(sol);
+
+		gains.bind(sol);
+		return sol.cost = evaluateBoundQBF();
+
+	}
+
+	/**
+	 * Gives the value of the QBF for the solution bound to the
+	 * {@link GainVector} of the current thread.
+	 * 
+	 * @return The value of the QBF.
+	 */
+	public Double evaluateBoundQBF() {
+		return context().gains.getCost();
+	}
+
+	/**
+	 * Evaluates a QBF from the list of the k variables selected by a
+	 * solution, in O(k^2) time instead of the O(n^2) of the matrix
+	 * multiplication, with {@link EvaluationContext#evaluateSelected}.
+	 * 
+	 * @param sol
+	 *            the solution being evaluated, without repeated elements.
+	 * @return The value of the QBF.
+	 */
+	public Double evaluateSelectedQBF(Solution<Integer> sol) {
+
+		return context().evaluateSelected(sol);
 
 	}
 
@@ -108,19 +199,7 @@ public class QBF implements Evaluator<Integer> {
 	 */
 	public Double evaluateQBF() {
 
-		Double aux = (double) 0, sum = (double) 0;
-		Double vecAux[] = new Double[size];
-
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < size; j++) {
-				aux += variables[j] * A[i][j];
-			}
-			vecAux[i] = aux;
-			sum += aux * variables[i];
-			aux = (double) 0;
-		}
-
-		return sum;
+		return Q.quadraticForm(getVariables());
 
 	}
 
@@ -133,7 +212,7 @@ public class QBF implements Evaluator<Integer> {
 	@Override
 	public Double evaluateInsertionCost(Integer elem, Solution<Integer> sol) {
 
-		setVariables(sol);
+		context().gains.bind(sol);
 		return evaluateInsertionQBF(elem);
 
 	}
@@ -149,10 +228,65 @@ public class QBF implements Evaluator<Integer> {
 	 */
 	public Double evaluateInsertionQBF(int i) {
 
-		if (variables[i] == 1)
-			return 0.0;
+		return context().gains.insertionDelta(i);
+
+	}
+
+	/**
+	 * Determines the variation of the QBF caused by the compound move which
+	 * inserts an element and removes its neighbors from a solution, which
+	 * keeps a solution without consecutive elements feasible.
+	 * 
+	 * @param elem
+	 *            the element being inserted into the solution.
+	 * @param sol
+	 *            the solution being modified.
+	 * @return The variation of the objective function resulting from the
+	 *         move.
+	 */
+	public Double evaluateInsertionEvictionCost(Integer elem, Solution<Integer> sol) {
+
+		context().gains.bind(sol);
+		return evaluateInsertionEvictionQBF(elem);
+
+	}
+
+	/**
+	 * Determines the variation of the QBF caused by inserting each one of a
+	 * list of elements and removing its neighbors, binding the solution to
+	 * the {@link GainVector} once.
+	 * 
+	 * @param elems
+	 *            the elements being inserted, one at a time.
+	 * @param sol
+	 *            the solution being modified.
+	 * @param deltas
+	 *            receives at position k the variation caused by the k-th
+	 *            element.
+	 */
+	public void evaluateInsertionEvictionCosts(List<Integer> elems, Solution<Integer> sol, double[] deltas) {
+
+		context().gains.bind(sol);
+		for (int k = 0; k < elems.size(); k++) {
+			deltas[k] = evaluateInsertionEvictionQBF(elems.get(k));
+		}
+
+	}
+
+	/**
+	 * Determines the contribution to the QBF objective function from the
+	 * insertion of an element together with the removal of its neighbors
+	 * i-1 and i+1, in O(1) time.
+	 * 
+	 * @param i
+	 *            Index of the element being inserted into the solution.
+	 * @return The variation of the objective function resulting from the
+	 *         move.
+	 */
+	public Double evaluateInsertionEvictionQBF(int i) {
+
+		return context().gains.insertionEvictionDelta(i);
 
-		return evaluateContributionQBF(i);
 	}
 
 	/*
@@ -164,7 +298,7 @@ public class QBF implements Evaluator<Integer> {
 	@Override
 	public Double evaluateRemovalCost(Integer elem, Solution<Integer> sol) {
 
-		setVariables(sol);
+		context().gains.bind(sol);
 		return evaluateRemovalQBF(elem);
 
 	}
@@ -180,10 +314,7 @@ public class QBF implements Evaluator<Integer> {
 	 */
 	public Double evaluateRemovalQBF(int i) {
 
-		if (variables[i] == 0)
-			return 0.0;
-
-		return -evaluateContributionQBF(i);
+		return context().gains.removalDelta(i);
 
 	}
 
@@ -196,130 +327,89 @@ public class QBF implements Evaluator<Integer> {
 	@Override
 	public Double evaluateExchangeCost(Integer elemIn, Integer elemOut, Solution<Integer> sol) {
 
-		setVariables(sol);
+		context().gains.bind(sol);
 		return evaluateExchangeQBF(elemIn, elemOut);
 
 	}
 
 	/**
-	 * Determines the contribution to the QBF objective function from the
-	 * exchange of two elements one belonging to the solution and the other not.
-	 * 
-	 * @param in
-	 *            The index of the element that is considered entering the
-	 *            solution.
-	 * @param out
-	 *            The index of the element that is considered exiting the
-	 *            solution.
-	 * @return The variation of the objective function resulting from the
-	 *         exchange.
+	 * {@inheritDoc} The solution is bound to the {@link GainVector} once, after which
+	 * each delta is read from the gains.
 	 */
-	public Double evaluateExchangeQBF(int in, int out) {
-
-		Double sum = 0.0;
-
-		if (in == out)
-			return 0.0;
-		if (variables[in] == 1)
-			return evaluateRemovalQBF(out);
-		if (variables[out] == 0)
-			return evaluateInsertionQBF(in);
+	@Override
+	public void evaluateInsertionCosts(List<Integer> elems, Solution<Integer> sol, double[] deltas) {
 
-		sum += evaluateContributionQBF(in);
-		sum -= evaluateContributionQBF(out);
-		sum -= (A[in][out] + A[out][in]);
+		context().gains.bind(sol);
+		for (int k = 0; k < elems.size(); k++) {
+			deltas[k] = evaluateInsertionQBF(elems.get(k));
+		}
 
-		return sum;
 	}
 
 	/**
-	 * Determines the contribution to the QBF objective function from the
-	 * insertion of an element. This method is faster than evaluating the whole
-	 * solution, since it uses the fact that only one line and one column from
-	 * matrix A needs to be evaluated when inserting a new element into the
-	 * solution. This method is different from {@link #evaluateInsertionQBF(int)},
-	 * since it disregards the fact that the element might already be in the
-	 * solution.
-	 * 
-	 * @param i
-	 *            index of the element being inserted into the solution.
-	 * @return the variation of the objective function resulting from the
-	 *         insertion.
+	 * {@inheritDoc} The solution is bound to the {@link GainVector} once, after which
+	 * each delta is read from the gains.
 	 */
-	private Double evaluateContributionQBF(int i) {
-
-		Double sum = 0.0;
+	@Override
+	public void evaluateRemovalCosts(List<Integer> elems, Solution<Integer> sol, double[] deltas) {
 
-		for (int j = 0; j < size; j++) {
-			if (i != j)
-				sum += variables[j] * (A[i][j] + A[j][i]);
+		context().gains.bind(sol);
+		for (int k = 0; k < elems.size(); k++) {
+			deltas[k] = evaluateRemovalQBF(elems.get(k));
 		}
-		sum += A[i][i];
 
-		return sum;
 	}
 
 	/**
-	 * Responsible for setting the QBF function parameters by reading the
-	 * necessary input from an external file. this method reads the domain's
-	 * dimension and matrix {@link #A}.
-	 * 
-	 * @param filename
-	 *            Name of the file containing the input for setting the black
-	 *            box function.
-	 * @return The dimension of the domain.
-	 * @throws IOException
-	 *             Necessary for I/O operations.
+	 * {@inheritDoc} The solution is bound to the {@link GainVector} once, after which
+	 * each delta only reads the coefficients of the row of elemIn.
 	 */
-	protected Integer readInput(String filename) throws IOException {
-
-		Reader fileInst = new BufferedReader(new FileReader(filename));
-		StreamTokenizer stok = new StreamTokenizer(fileInst);
-
-		stok.nextToken();
-		Integer _size = (int) stok.nval;
-		A = new Double[_size][_size];
-
-		for (int i = 0; i < _size; i++) {
-			for (int j = i; j < _size; j++) {
-				stok.nextToken();
-				A[i][j] = stok.nval;
-				//A[j][i] = A[i][j];
-				if (j>i)
-					A[j][i] = 0.0;
-			}
-		}
+	@Override
+	public void evaluateExchangeCosts(Integer elemIn, List<Integer> elemsOut, Solution<Integer> sol,
+			double[] deltas) {
 
-		return _size;
+		context().gains.bind(sol);
+		for (int k = 0; k < elemsOut.size(); k++) {
+			deltas[k] = evaluateExchangeQBF(elemIn, elemsOut.get(k));
+		}
 
 	}
 
 	/**
-	 * Reserving the required memory for storing the values of the domain
-	 * variables.
+	 * Determines the contribution to the QBF objective function from the
+	 * exchange of two elements one belonging to the solution and the other not.
 	 * 
-	 * @return a pointer to the array of domain variables.
+	 * @param in
+	 *            The index of the element that is considered entering the
+	 *            solution.
+	 * @param out
+	 *            The index of the element that is considered exiting the
+	 *            solution.
+	 * @return The variation of the objective function resulting from the
+	 *         exchange.
 	 */
-	protected Double[] allocateVariables() {
-		Double[] _variables = new Double[size];
-		return _variables;
+	public Double evaluateExchangeQBF(int in, int out) {
+
+		return context().gains.exchangeDelta(in, out);
+
 	}
 
 	/**
 	 * Reset the domain variables to their default values.
 	 */
 	public void resetVariables() {
-		Arrays.fill(variables, 0.0);
+		Arrays.fill(getVariables(), 0.0);
 	}
 
 	/**
-	 * Prints matrix {@link #A}.
+	 * Prints the upper triangle of matrix {@link #Q}, which is the
+	 * triangular matrix of coefficients read from the input.
 	 */
 	public void printMatrix() {
 
 		for (int i = 0; i < size; i++) {
 			for (int j = i; j < size; j++) {
-				System.out.print(A[i][j] + " ");
+				System.out.print(Q.get(i, j) + " ");
 			}
 			System.out.println();
 		}
@@ -339,7 +429,7 @@ public class QBF implements Evaluator<Integer> {
 		Double maxVal = Double.NEGATIVE_INFINITY;
 		
 //		System.out.println("maxVal = " + qbf.evaluateQBF());
-//		System.out.println("size = " + qbf.variables.length);
+//		System.out.println("size = " + qbf.getVariables().length);
 //		System.exit(0);
 		
 
@@ -348,11 +438,11 @@ public class QBF implements Evaluator<Integer> {
 		for (int i = 0; i < 10000; i++) {
 			for (int j = 0; j < qbf.size; j++) {
 				if (Math.random() < 0.5)
-					qbf.variables[j] = 0.0;
+					qbf.getVariables()[j] = 0.0;
 				else
-					qbf.variables[j] = 1.0;
+					qbf.getVariables()[j] = 1.0;
 			}
-			System.out.println("x = " + Arrays.toString(qbf.variables));
+			System.out.println("x = " + Arrays.toString(qbf.getVariables()));
 			Double eval = qbf.evaluateQBF();
 			System.out.println("f(x) = " + eval);
 			if (maxVal < eval)
@@ -362,16 +452,16 @@ public class QBF implements Evaluator<Integer> {
 
 		// evaluates the zero array.
 		for (int j = 0; j < qbf.size; j++) {
-			qbf.variables[j] = 0.0;
+			qbf.getVariables()[j] = 0.0;
 		}
-		System.out.println("x = " + Arrays.toString(qbf.variables));
+		System.out.println("x = " + Arrays.toString(qbf.getVariables()));
 		System.out.println("f(x) = " + qbf.evaluateQBF());
 
 		// evaluates the all-ones array.
 		for (int j = 0; j < qbf.size; j++) {
-			qbf.variables[j] = 1.0;
+			qbf.getVariables()[j] = 1.0;
 		}
-		System.out.println("x = " + Arrays.toString(qbf.variables));
+		System.out.println("x = " + Arrays.toString(qbf.getVariables()));
 		System.out.println("f(x) = " + qbf.evaluateQBF());
 		
 		
@@ -0,0 +1,268 @@
+package tabusearchheuristic.problems.qbf;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of random QBF instances of any dimension, which streams the
+ * upper triangle of the matrix to disk row by row, in the text format of
+ * instances/README or in the {@link QBFBinaryFormat}, without keeping it in
+ * memory. Each coefficient is nonzero with a given probability, and nonzero
+ * coefficients are uniformly distributed integers in a given range. The
+ * positions of the nonzero coefficients of a row are drawn as geometric gaps,
+ * so a sparse instance takes a time proportional to its number of nonzeros
+ * (plus the zeros written by the text format and the dense binary layout).
+ * An instance is determined by its parameters and seed, whatever its format.
+ */
+public class QBFInstanceGenerator {
+
+	/**
+	 * Receives the nonzero coefficients of the upper triangle, row by row
+	 * and column by column.
+	 */
+	private interface CoefficientSink {
+		void accept(int i, int j, long value) throws IOException;
+	}
+
+	private final int size;
+	private final double density;
+	private final long min, max;
+	private final long seed;
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param size
+	 *            Dimension of the instances.
+	 * @param density
+	 *            Probability of each coefficient of the upper triangle being
+	 *            nonzero, in (0, 1].
+	 * @param min
+	 *            Smallest coefficient.
+	 * @param max
+	 *            Largest coefficient; [min, max] must contain a nonzero value.
+	 * @param seed
+	 *            Seed of the random number generator.
+	 */
+	public QBFInstanceGenerator(int size, double density, int min, int max, long seed) {
+		if (size < 1)
+			throw new IllegalArgumentException("Dimension must be positive: " + size);
+		if (!(density > 0.0 && density <= 1.0))
+			throw new IllegalArgumentException("Density must be in (0, 1]: " + density);
+		if (min > max || (min == 0 && max == 0))
+			throw new IllegalArgumentException("Empty range of nonzero coefficients: [" + min + ", " + max + "]");
+		this.size = size;
+		this.density = density;
+		this.min = min;
+		this.max = max;
+		this.seed = seed;
+	}
+
+	/**
+	 * Draws the instance, giving its nonzero coefficients to a sink in the
+	 * order of the text format.
+	 */
+	private void generate(CoefficientSink sink) throws IOException {
+
+		SplittableRandom random = new SplittableRandom(seed);
+		boolean spansZero = min <= 0 && max >= 0;
+		long values = max - min + (spansZero ? 0 : 1);
+		double logMiss = density < 1.0 ? Math.log1p(-density) : 0.0;
+
+		for (int i = 0; i < size; i++) {
+			/* in long, since a gap may exceed the room left before Integer.MAX_VALUE */
+			for (long j = i + gap(random, logMiss); j < size; j += 1L + gap(random, logMiss)) {
+				long value = min + random.nextLong(values);
+				if (spansZero && value >= 0)
+					value++;
+				sink.accept(i, (int) j, value);
+			}
+		}
+
+	}
+
+	/**
+	 * @return the number of zero coefficients before the next nonzero one,
+	 *         which follows a geometric distribution.
+	 */
+	private static long gap(SplittableRandom random, double logMiss) {
+		if (logMiss == 0.0)
+			return 0;
+		double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / logMiss);
+		return gap < Integer.MAX_VALUE ? (long) gap : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Writes the instance in the text format of instances/README.
+	 *
+	 * @param filename
+	 *            Name of the file being written.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeText(String filename) throws IOException {
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16)) {
+			byte[] digits = new byte[24];
+			writeNumber(out, digits, size);
+			out.write('\n');
+
+			/* the position following the last coefficient written */
+			int[] next = { 0, 0 };
+			CoefficientSink sink = (i, j, value) -> {
+				while (next[0] < i || next[1] < j) {
+					writeZero(out, next);
+				}
+				writeNumber(out, digits, value);
+				advance(out, next);
+			};
+			generate(sink);
+			while (next[0] < size) {
+				writeZero(out, next);
+			}
+		}
+
+	}
+
+	private void writeZero(OutputStream out, int[] next) throws IOException {
+		out.write('0');
+		advance(out, next);
+	}
+
+	/**
+	 * Writes the separator following the coefficient at position next and
+	 * moves to the next position of the upper triangle.
+	 */
+	private void advance(OutputStream out, int[] next) throws IOException {
+		if (++next[1] < size) {
+			out.write(' ');
+		} else {
+			out.write('\n');
+			next[1] = ++next[0];
+		}
+	}
+
+	private static void writeNumber(OutputStream out, byte[] digits, long value) throws IOException {
+		if (value < 0)
+			out.write('-');
+		int p = digits.length;
+		long v = Math.abs(value);
+		do {
+			digits[--p] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while (v != 0);
+		out.write(digits, p, digits.length - p);
+	}
+
+	/**
+	 * Writes the instance in the {@link QBFBinaryFormat}, with the smallest
+	 * value type able to hold the range of coefficients and the layout which
+	 * takes less space for the density. Files larger than 2 GB are written
+	 * but cannot be mapped by {@link QBFBinaryFormat#read}.
+	 *
+	 * @param filename
+	 *            Name of the file being written.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeBinary(String filename) throws IOException {
+
+		int valueBytes = QBFBinaryFormat.valueBytesFor(min, max, true);
+		byte layout = density * (8 + valueBytes) < valueBytes ? QBFBinaryFormat.SPARSE : QBFBinaryFormat.DENSE;
+
+		try (QBFBinaryFormat.Writer writer = new QBFBinaryFormat.Writer(filename, size, layout, valueBytes)) {
+			if (layout == QBFBinaryFormat.SPARSE) {
+				generate(writer::write);
+			} else {
+				int[] next = { 0, 0 };
+				generate((i, j, value) -> {
+					while (next[0] < i || next[1] < j) {
+						writer.write(next[0], next[1], 0.0);
+						nextPosition(next);
+					}
+					writer.write(i, j, value);
+					nextPosition(next);
+				});
+				while (next[0] < size) {
+					writer.write(next[0], next[1], 0.0);
+					nextPosition(next);
+				}
+			}
+		}
+
+	}
+
+	private void nextPosition(int[] next) {
+		if (++next[1] == size)
+			next[1] = ++next[0];
+	}
+
+	/**
+	 * Generates an instance.
+	 *
+	 * <pre>
+	 * QBFInstanceGenerator &lt;N&gt; &lt;file&gt; [density=1.0] [min=-10] [max=10] [seed=0] [format=text|binary]
+	 * </pre>
+	 *
+	 * The format defaults to binary for files ending in .bin and to text
+	 * otherwise.
+	 *
+	 * @param args
+	 *            the dimension, the file being written and the options.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("Usage: QBFInstanceGenerator <N> <file> [density=1.0] [min=-10] [max=10] [seed=0]"
+					+ " [format=text|binary]");
+			System.exit(1);
+		}
+
+		int size = Integer.parseInt(args[0]);
+		String filename = args[1];
+		double density = 1.0;
+		int min = -10, max = 10;
+		long seed = 0;
+		boolean binary = filename.endsWith(".bin");
+
+		for (int k = 2; k < args.length; k++) {
+			int eq = args[k].indexOf('=');
+			String key = eq < 0 ? args[k] : args[k].substring(0, eq), value = args[k].substring(eq + 1);
+			switch (key) {
+			case "density":
+				density = Double.parseDouble(value);
+				break;
+			case "min":
+				min = Integer.parseInt(value);
+				break;
+			case "max":
+				max = Integer.parseInt(value);
+				break;
+			case "seed":
+				seed = Long.parseLong(value);
+				break;
+			case "format":
+				binary = value.equals("binary");
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[k]);
+			}
+		}
+
+		long start = System.nanoTime();
+		QBFInstanceGenerator generator = new QBFInstanceGenerator(size, density, min, max, seed);
+		if (binary)
+			generator.writeBinary(filename);
+		else
+			generator.writeText(filename);
+		System.out.printf("%s: N = %d, density %.4f, written in %.1f s%n", filename, size, density,
+				(System.nanoTime() - start) / 1e9);
+
+	}
+
+}
@@ -1,11 +1,14 @@
 package tabusearchheuristic.problems.qbf;
 
 import java.io.IOException;
+import tabusearchheuristic.solutions.Solution;
 
 /**
  * Class representing the inverse of the Quadractic Binary Function
  * ({@link QBF}), which is used since the GRASP is set by
- * default as a minimization procedure.
+ * default as a minimization procedure. It is a view of the instance with
+ * the sign flipped: it shares the matrix of the {@link QBFInstance} and
+ * negates the values computed from it.
  * 
  * @author ccavellucci, fusberti
  */
@@ -24,6 +27,17 @@ public class QBF_Inverse extends QBF {
 		super(filename);
 	}
 
+	/**
+	 * Constructor for the QBF_Inverse class over an instance which may be
+	 * shared with other functions and threads.
+	 * 
+	 * @param instance
+	 *            the instance whose solutions are evaluated.
+	 */
+	public QBF_Inverse(QBFInstance instance) {
+		super(instance);
+	}
+
 
 	/* (non-Javadoc)
 	 * @see problems.qbf.QBF#evaluate()
@@ -33,6 +47,22 @@ public class QBF_Inverse extends QBF {
 		return -super.evaluateQBF();
 	}
 	
+	/* (non-Javadoc)
+	 * @see problems.qbf.QBF#evaluateBoundQBF()
+	 */
+	@Override
+	public Double evaluateBoundQBF() {
+		return -super.evaluateBoundQBF();
+	}
+	
+	/* (non-Javadoc)
+	 * @see problems.qbf.QBF#evaluateSelectedQBF(solutions.Solution)
+	 */
+	@Override
+	public Double evaluateSelectedQBF(Solution<Integer> sol) {
+		return -super.evaluateSelectedQBF(sol);
+	}
+	
 	/* (non-Javadoc)
 	 * @see problems.qbf.QBF#evaluateInsertion(int)
 	 */
@@ -41,6 +71,14 @@ public class QBF_Inverse extends QBF {
 		return -super.evaluateInsertionQBF(i);
 	}
 	
+	/* (non-Javadoc)
+	 * @see problems.qbf.QBF#evaluateInsertionEvictionQBF(int)
+	 */
+	@Override
+	public Double evaluateInsertionEvictionQBF(int i) {
+		return -super.evaluateInsertionEvictionQBF(i);
+	}
+	
 	/* (non-Javadoc)
 	 * @see problems.qbf.QBF#evaluateRemoval(int)
 	 */
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,6 +14,7 @@ import java.util.stream.Collectors;
 
 import tabusearchheuristic.metaheuristics.tabusearch.AbstractTS;
 import tabusearchheuristic.problems.qbf.QBF_Inverse;
+import tabusearchheuristic.solutions.BitSetSolution;
 import tabusearchheuristic.solutions.Solution;
 
 
@@ -80,7 +80,7 @@ public class TS_QBF extends AbstractTS<Integer> {
 	@Override
 	public ArrayList<Integer> makeCL() {
 
-		ArrayList<Integer> _CL = new ArrayList<Integer>();
+		ArrayList<Integer> _CL = new BitSetSolution(ObjFunction.getDomainSize());
 		for (int i = 0; i < ObjFunction.getDomainSize(); i++) {
 			Integer cand = new Integer(i);
 			_CL.add(cand);
@@ -131,11 +131,12 @@ public class TS_QBF extends AbstractTS<Integer> {
 	 * 
 	 * This createEmptySol instantiates an empty solution and it attributes a
 	 * zero cost, since it is known that a QBF solution with all variables set
-	 * to zero has also zero cost.
+	 * to zero has also zero cost. The solution is a {@link BitSetSolution},
+	 * so membership tests and removals by value take O(1).
 	 */
 	@Override
 	public Solution<Integer> createEmptySol() {
-		Solution<Integer> sol = new Solution<Integer>();
+		Solution<Integer> sol = new BitSetSolution(ObjFunction.getDomainSize());
 		sol.cost = 0.0;
 		return sol;
 	}
@@ -192,8 +193,10 @@ public class TS_QBF extends AbstractTS<Integer> {
 	    minDeltaCost = Double.POSITIVE_INFINITY;
         //updateCL();
         // Evaluate insertions
-        for (Integer candIn : CL) {
-            Double deltaCost = ObjFunction.evaluateInsertionCost(candIn, incumbentSol);
+        ObjFunction.evaluateInsertionCosts(CL, incumbentSol, deltas);
+        for (int k = 0; k < CL.size(); k++) {
+            Integer candIn = CL.get(k);
+            double deltaCost = deltas[k];
             if (evaluationAllowed(candIn, OperationNeighborhood.INSERT)) {
                 if (deltaCost < minDeltaCost) {
                     minDeltaCost = deltaCost;
@@ -203,8 +206,10 @@ public class TS_QBF extends AbstractTS<Integer> {
             }
         }
         // Evaluate removals
-        for (Integer candOut : incumbentSol) {
-            Double deltaCost = ObjFunction.evaluateRemovalCost(candOut, incumbentSol);
+        ObjFunction.evaluateRemovalCosts(incumbentSol, incumbentSol, deltas);
+        for (int k = 0; k < incumbentSol.size(); k++) {
+            Integer candOut = incumbentSol.get(k);
+            double deltaCost = deltas[k];
             if (evaluationAllowed(candOut, OperationNeighborhood.REMOVE)) {
                 if (deltaCost < minDeltaCost) {
                     minDeltaCost = deltaCost;
@@ -215,8 +220,10 @@ public class TS_QBF extends AbstractTS<Integer> {
         }
         // Evaluate exchanges
         for (Integer candIn : CL) {
-            for (Integer candOut : incumbentSol) {
-                Double deltaCost = ObjFunction.evaluateExchangeCost(candIn, candOut, incumbentSol);
+            ObjFunction.evaluateExchangeCosts(candIn, incumbentSol, incumbentSol, deltas);
+            for (int k = 0; k < incumbentSol.size(); k++) {
+                Integer candOut = incumbentSol.get(k);
+                double deltaCost = deltas[k];
                 if (evaluationAllowed(candIn, candOut)) {
                     if (deltaCost < minDeltaCost) {
                         minDeltaCost = deltaCost;
@@ -378,60 +385,37 @@ public class TS_QBF extends AbstractTS<Integer> {
         ObjFunction.evaluate(incumbentSol);
     }
 	
+	/**
+	 * Removes one element, chosen at random, of each pair of consecutive
+	 * elements of the incumbent solution, which is a {@link BitSetSolution}
+	 * whose elements are walked in increasing order.
+	 */
 	private void randomizedSimplestRepair() {
-        double removeCandIndexProb = 0;
-        int removeCandIndex = 0;
-        Solution<Integer> incumbentSolCopy = new Solution<Integer>(incumbentSol);
-        sortSolution(incumbentSolCopy);
+        BitSetSolution sol = (BitSetSolution) incumbentSol;
         
         /*Simplest repair: remove the right element that is incorrect*/
-        for(int index = 0; index < incumbentSolCopy.size(); index++) {
-            if(index < (incumbentSolCopy.size() - 1) && applyAdjacentConstraint(incumbentSolCopy, index)) {
-                removeCandIndexProb = rng.nextDouble();
-                removeCandIndex = Double.compare(removeCandIndexProb, 0.5) <= 0 ? index : index + 1;
-                
-                int indexElement = incumbentSol.indexOf(incumbentSolCopy.get(removeCandIndex));
-                Integer element = incumbentSol.get(indexElement);
+        int current = sol.nextElement(0);
+        while (current >= 0) {
+            int next = sol.nextElement(current + 1);
+            if (next == current + 1) {
+                Integer element = Double.compare(rng.nextDouble(), 0.5) <= 0 ? current : next;
                 CL.add(element);
                 
                 if(!tlRemovedRandomItens.contains(element)) {
-                    tlRemovedRandomItens.add(incumbentSol.get(indexElement));
+                    tlRemovedRandomItens.add(element);
                 }
                 
-                removeElementByValue(incumbentSol, incumbentSolCopy.get(removeCandIndex));
-                incumbentSolCopy.remove(removeCandIndex);
+                sol.remove(element);
                 
-                if(removeCandIndex == index) {
-                    index--;
+                if(element == current) {
+                    current = next;
                 }
+            } else {
+                current = next;
             }
         }
     }
 	
-	private void removeElementByValue(Solution<Integer> solution, int targetValue) {
-        for(int index = 0; index < solution.size(); index++) {
-            if(solution.get(index).intValue() == targetValue) {
-                solution.remove(index);
-                break;
-            }
-        }
-    }
-	
-	private boolean applyAdjacentConstraint(Solution<Integer> currentSolution, int currentIndex) {
-        return currentSolution.get(currentIndex) + 1 == currentSolution.get(currentIndex+1);
-    }
-	
-	private void sortSolution(Solution<Integer> sol) {
-        sol.sort(new Comparator<Integer>() {
-            @Override
-            public int compare(Integer element1, Integer element2)
-            {
-
-                return  element1.compareTo(element2);
-            }
-        });
-    }
-	
 	/**
 	 * A main method used for testing the TS metaheuristic.
 	 * 
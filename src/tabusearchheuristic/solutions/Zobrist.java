@@ -0,0 +1,48 @@
+package tabusearchheuristic.solutions;
+
+import java.util.Collection;
+
+/**
+ * Zobrist hashing of solutions: the fingerprint of a set of elements is the
+ * exclusive or of a random 64-bit key of each element, so inserting or
+ * removing an element updates it in O(1) by xoring its key. The keys are not
+ * stored but computed by the SplitMix64 finalizer, which makes them the same
+ * for every solution and every run.
+ */
+public final class Zobrist {
+
+	private Zobrist() {
+	}
+
+	/**
+	 * @param element
+	 *            an element of a problem domain.
+	 * @return the random key of the element.
+	 */
+	public static long key(int element) {
+		long z = (element + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Computes the fingerprint of a set of elements from scratch, using the
+	 * hash code of each one, which for an Integer is its value.
+	 *
+	 * @param elements
+	 *            the elements, without repetitions.
+	 * @return the fingerprint of the set.
+	 */
+	public static long fingerprint(Collection<?> elements) {
+
+		long fingerprint = 0L;
+		for (Object e : elements) {
+			fingerprint ^= key(e.hashCode());
+		}
+
+		return fingerprint;
+
+	}
+
+}